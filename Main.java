@@ -1,157 +1,357 @@
-import controller.AppController;
-import model.*;
-import view.MainView;
-
-import javax.swing.*;
-import java.time.LocalDate;
-
-public class Main {
-    public static void main(String[] args) {
-        System.setProperty("java.awt.headless", "false");
-
-        Repository repo = new Repository();
-        Validation validator = new Validation();
-        AppController controller = new AppController(repo, validator);
-
-        seedDemoData(repo, controller);
-
-        System.out.println("[BOOT] projects=" + repo.listProjects().size());
-
-        SwingUtilities.invokeLater(() -> {
-            try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Throwable ignore) {}
-            MainView ui = new MainView(controller);
-            ui.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-            ui.setVisible(true);
-        });
-    }
-    
-    //สร้าง seed ไว้ใน db -------------
-
-    private static void seedDemoData(Repository repo, AppController controller) {
-        //----- Users (upsert ได้ ไม่กระทบตัวprogress) -----
-        repo.upsertUser(new User("U001", "alice",   "Alice",   "alice123"));
-        repo.upsertUser(new User("U002", "bob",     "Bob",     "bob123"));
-        repo.upsertUser(new User("U003", "charlie", "Charlie", "charlie123"));
-        repo.upsertUser(new User("U004", "diana",   "Diana",   "diana123"));
-        repo.upsertUser(new User("U005", "eric",    "Eric",    "eric123"));
-        repo.upsertUser(new User("U006", "fiona",   "Fiona",   "fiona123"));
-        repo.upsertUser(new User("U007", "george",  "George",  "george123"));
-        repo.upsertUser(new User("U008", "helen",   "Helen",   "helen123"));
-        repo.upsertUser(new User("U009", "ivan",    "Ivan",    "ivan123"));
-        repo.upsertUser(new User("U010", "jane",    "Jane",    "jane123"));
-
-        //----- Projects CREATE-IF-ABSENT (จะไม่ไปรีเซ็ต raised เดิม) -----
-        ensureProject(repo, "10000001", "Smart Hydro Farm",    150000, LocalDate.now().plusDays(30), "TECH");
-        ensureProject(repo, "10000002", "Indie Board Game",     50000, LocalDate.now().plusDays(25), "ART");
-        ensureProject(repo, "10000003", "Community Clinic",    200000, LocalDate.now().plusDays(45), "HEALTH");
-        ensureProject(repo, "10000004", "After-School Program",  80000, LocalDate.now().plusDays(40), "EDUCATION");
-        ensureProject(repo, "10000005", "Green City Trees",     120000, LocalDate.now().plusDays(35), "ENV");
-        ensureProject(repo, "10000006", "Street Food Festival",  60000, LocalDate.now().plusDays(20), "FOOD");
-        ensureProject(repo, "10000007", "Open Source IDE",      180000, LocalDate.now().plusDays(55), "TECH");
-        ensureProject(repo, "10000008", "Local Band Album",      70000, LocalDate.now().plusDays(28), "MUSIC");
-
-        //----- Reward tiers CREATE-IF-ABSENT (ไม่reset quota ที่ถูกใชไปแล้ว) -----
-        ensureReward(repo, "10000001", "Supporter",   200, 500);
-        ensureReward(repo, "10000001", "Starter Kit", 1000, 50);
-        ensureReward(repo, "10000001", "Pro Kit",     3000, 10);
-
-        ensureReward(repo, "10000002", "Early Bird",  300, 100);
-        ensureReward(repo, "10000002", "Collector",  1200, 20);
-
-        ensureReward(repo, "10000003", "Donor",       500, 400);
-        ensureReward(repo, "10000003", "Sponsor",    3000, 40);
-
-        ensureReward(repo, "10000004", "Backer",      250, 200);
-        ensureReward(repo, "10000004", "Patron",     1500, 30);
-
-        ensureReward(repo, "10000005", "Sapling",     300, 300);
-        ensureReward(repo, "10000005", "Groves",     2000, 25);
-
-        ensureReward(repo, "10000006", "Taster",      150, 300);
-        ensureReward(repo, "10000006", "VIP Pass",    900, 40);
-
-        ensureReward(repo, "10000007", "Contributor", 400, 300);
-        ensureReward(repo, "10000007", "Sponsor",    2500, 25);
-
-        ensureReward(repo, "10000008", "Fan",         200, 300);
-        ensureReward(repo, "10000008", "Producer",   1800, 20);
-
-        //----- Pledges seed ครั้งแรกเท่านั้น (ถ้ายังไม่มีไฟล์) -----
-        if (repo.listPledges().isEmpty()) {
-            //ตัวอย่างทั้ง SUCCESS/REJECT
-            controller.login("alice", "alice123");
-            controller.createPledge("10000001", 1000, "Starter Kit"); //SUCCESS
-            controller.createPledge("10000001", 100,  "Supporter");   //REJECT
-
-            controller.login("bob", "bob123");
-            controller.createPledge("10000002", 300,  "Early Bird");  //SUCCESS
-            controller.createPledge("10000002", 200,  "Early Bird");  //REJECT
-
-            controller.login("charlie", "charlie123");
-            controller.createPledge("10000003", 700,  null);          //SUCCESS(no reward)
-
-            controller.login("diana", "diana123");
-            controller.createPledge("10000004", 100,  "Backer");      //REJECT(below min)
-
-            controller.login("eric", "eric123");
-            controller.createPledge("10000005", 2200, "Groves");      //SUCCESS
-
-            controller.login("fiona", "fiona123");
-            controller.createPledge("10000006", 900,  "VIP Pass");    //SUCCESS
-
-            controller.login("george", "george123");
-            controller.createPledge("10000007", 500,  "Contributor"); //SUCCESS
-
-            controller.login("helen", "helen123");
-            controller.createPledge("10000008", 1800, "Producer");    //SUCCESS
-
-            // เพิ่มเติม: successful pledges เพื่อให้ progress ชัดเจนตั้งแต่เปิดแอป
-            controller.login("ivan", "ivan123");
-            controller.createPledge("10000001", 200,  "Supporter");   //SUCCESS
-
-            controller.login("jane", "jane123");
-            controller.createPledge("10000002", 1200, "Collector");   //SUCCESS
-
-            controller.login("alice", "alice123");
-            controller.createPledge("10000007", 2500, "Sponsor");     //SUCCESS
-
-            controller.login("bob", "bob123");
-            controller.createPledge("10000008", 200,  "Fan");         //SUCCESS
-
-            controller.login("charlie", "charlie123");
-            controller.createPledge("10000005", 300,  "Sapling");     //SUCCESS
-
-            controller.login("diana", "diana123");
-            controller.createPledge("10000006", 150,  "Taster");      //SUCCESS
-
-            controller.login("eric", "eric123");
-            controller.createPledge("10000003", 3000, "Sponsor");     //SUCCESS
-
-            controller.login("fiona", "fiona123");
-            controller.createPledge("10000004", 250,  "Backer");      //SUCCESS
-
-            controller.login("george", "george123");
-            controller.createPledge("10000002", 300,  "Early Bird");  //SUCCESS
-
-            controller.login("helen", "helen123");
-            controller.createPledge("10000001", 3000, "Pro Kit");     //SUCCESS
-
-            controller.logout();
-        }
-    }
-
-    //--- helpers create-if-absent ---
-    private static void ensureProject(Repository repo, String id, String name, double goal,
-                                      LocalDate deadline, String category) {
-        if (repo.getProject(id).isEmpty()) {
-            repo.upsertProject(new Project(id, name, goal, deadline, category));
-        }
-    }
-
-    private static void ensureReward(Repository repo, String projectId, String tierName,
-                                     double minAmount, int quota) {
-        if (repo.getRewardTier(projectId, tierName).isEmpty()) {
-            repo.upsertRewardTier(new RewardTier(projectId, tierName, minAmount, quota));
-        }
-    }
-}
+import controller.AppController;
+import controller.StressHarness;
+import model.*;
+import view.MainView;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class Main {
+    //โหมดเริ่มระบบ (--mode ui|service|batch)
+    //UI      : Swing ตามเดิม seed ให้อัตโนมัติ (ปิดด้วย --no-seed)
+    //SERVICE : headless, LAZY pledges, ไม่ seed/reconcile ถ้าไม่สั่ง (--seed, --reconcile) แล้วรอจนโดนปิด
+    //BATCH   : headless ทำงาน boot (seed/reconcile/archive ตาม flag) แล้วจบ
+    private enum Mode { UI, SERVICE, BATCH }
+
+    public static void main(String[] args) {
+        //CLI export ไม่ต้องมี UI/seed
+        if (args.length > 0 && args[0].equals("export")) {
+            runExport(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("ingest")) {
+            runIngest(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("stress")) {
+            runStress(args);
+            return;
+        }
+
+        long bootStart = System.nanoTime();
+        List<String> flags = Arrays.asList(args);
+        Mode mode = enumValue(Mode.class, flagValue(args, "--mode", "ui"), "usage: --mode ui|service|batch");
+        System.setProperty("java.awt.headless", String.valueOf(mode != Mode.UI));
+
+        //--lazy-pledges: ไม่โหลดประวัติ pledge ทั้งหมดตอน start (ดู Repository.PledgeLoadMode)
+        long t = System.nanoTime();
+        boolean lazy = flags.contains("--lazy-pledges") || mode == Mode.SERVICE;
+        Repository repo = new Repository(lazy ? Repository.PledgeLoadMode.LAZY : Repository.PledgeLoadMode.EAGER, 64);
+        Validation validator = new Validation();
+        AppController controller = new AppController(repo, validator);
+        //reject log: เก็บกี่วัน / เขียน 1 ใน n รายการ (ยอด REJECT ยังนับครบ)
+        repo.rejectLog().configure(Integer.parseInt(flagValue(args, "--reject-retention-days", "30")),
+                Integer.parseInt(flagValue(args, "--reject-sample", "1")));
+        t = phase("load", t);
+
+        //seed ทั้งก้อนใน batch เดียว (เขียนไฟล์ครั้งเดียวตอนจบ)
+        boolean seed = (mode == Mode.UI) ? !flags.contains("--no-seed") : flags.contains("--seed");
+        if (seed) {
+            repo.inBatch(() -> seedDemoData(repo, controller));
+            t = phase("seed", t);
+        }
+
+        //ตรวจ raised/quota กับ pledge ตอน boot (--repair แก้ค่าที่ไม่ตรงให้) service ข้ามได้เพราะต้องอ่านทุก pledge
+        if (mode != Mode.SERVICE || flags.contains("--reconcile")) {
+            ReconcileReport rec = repo.reconcile(flags.contains("--repair"));
+            System.out.println("[BOOT] reconcile " + rec);
+            rec.getDrifts().forEach(d -> System.out.println("[BOOT]   drift " + d));
+            t = phase("reconcile", t);
+        }
+
+        //--archive-closed: ย้าย pledge ของโครงการที่ปิดแล้วออกจาก pledges.csv ก่อนเปิด UI
+        if (flags.contains("--archive-closed")) {
+            System.out.println("[BOOT] archived pledges=" + repo.archiveClosedProjects(LocalDate.now()));
+            t = phase("archive", t);
+        }
+
+        System.out.println("[BOOT] projects=" + repo.listProjects().size() + " active=" + repo.listActiveProjects().size());
+        System.out.println("[BOOT] " + repo.symbols().diagnostic());
+        System.out.printf("[BOOT] ready mode=%s in %dms%n", mode, (System.nanoTime() - bootStart) / 1_000_000);
+
+        //UI/service รันข้ามวันได้: ปิดโครงการที่ถึง deadline ทุกเที่ยงคืน และรับการแก้ไฟล์ csv ระหว่างรัน
+        if (mode != Mode.BATCH) {
+            controller.startDeadlineScheduler();
+            controller.startResourceWatcher();
+        }
+
+        switch (mode) {
+            case UI -> SwingUtilities.invokeLater(() -> {
+                try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Throwable ignore) {}
+                MainView ui = new MainView(controller);
+                ui.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+                ui.setVisible(true);
+            });
+            case SERVICE -> awaitShutdown(controller::shutdown);
+            case BATCH -> controller.shutdown();
+        }
+    }
+
+    //พิมพ์เวลาที่ใช้ของแต่ละช่วง boot คืนเวลาปัจจุบันไว้จับช่วงถัดไป
+    private static long phase(String name, long since) {
+        long now = System.nanoTime();
+        System.out.printf("[BOOT] phase %-9s %dms%n", name, (now - since) / 1_000_000);
+        return now;
+    }
+
+    private static String flagValue(String[] args, String name, String def) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return def;
+    }
+
+    //ค่า enum จาก flag (ไม่สนตัวพิมพ์) พิมพ์ผิดก็บอก usage บรรทัดเดียวแล้วจบ ไม่ต้องโยน stack trace
+    private static <E extends Enum<E>> E enumValue(Class<E> type, String value, String usage) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println(usage + " (got \"" + value + "\")");
+            System.exit(2);
+            return null;
+        }
+    }
+
+    //service: ถือ process ไว้จนได้ SIGTERM/Ctrl+C (onStop ทำใน hook เพราะ JVM ไม่รอ main thread)
+    private static void awaitShutdown(Runnable onStop) {
+        CountDownLatch stop = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("[BOOT] shutting down");
+            onStop.run();
+            stop.countDown();
+        }));
+        try { stop.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+    
+    //สร้าง seed ไว้ใน db -------------
+
+    private static void seedDemoData(Repository repo, AppController controller) {
+        //----- Users (upsert ได้ ไม่กระทบตัวprogress) -----
+        repo.upsertUser(new User("U001", "alice",   "Alice",   "alice123"));
+        repo.upsertUser(new User("U002", "bob",     "Bob",     "bob123"));
+        repo.upsertUser(new User("U003", "charlie", "Charlie", "charlie123"));
+        repo.upsertUser(new User("U004", "diana",   "Diana",   "diana123"));
+        repo.upsertUser(new User("U005", "eric",    "Eric",    "eric123"));
+        repo.upsertUser(new User("U006", "fiona",   "Fiona",   "fiona123"));
+        repo.upsertUser(new User("U007", "george",  "George",  "george123"));
+        repo.upsertUser(new User("U008", "helen",   "Helen",   "helen123"));
+        repo.upsertUser(new User("U009", "ivan",    "Ivan",    "ivan123"));
+        repo.upsertUser(new User("U010", "jane",    "Jane",    "jane123"));
+
+        //----- Projects CREATE-IF-ABSENT (จะไม่ไปรีเซ็ต raised เดิม) -----
+        ensureProject(repo, "10000001", "Smart Hydro Farm",    150000, LocalDate.now().plusDays(30), "TECH");
+        ensureProject(repo, "10000002", "Indie Board Game",     50000, LocalDate.now().plusDays(25), "ART");
+        ensureProject(repo, "10000003", "Community Clinic",    200000, LocalDate.now().plusDays(45), "HEALTH");
+        ensureProject(repo, "10000004", "After-School Program",  80000, LocalDate.now().plusDays(40), "EDUCATION");
+        ensureProject(repo, "10000005", "Green City Trees",     120000, LocalDate.now().plusDays(35), "ENV");
+        ensureProject(repo, "10000006", "Street Food Festival",  60000, LocalDate.now().plusDays(20), "FOOD");
+        ensureProject(repo, "10000007", "Open Source IDE",      180000, LocalDate.now().plusDays(55), "TECH");
+        ensureProject(repo, "10000008", "Local Band Album",      70000, LocalDate.now().plusDays(28), "MUSIC");
+
+        //----- Reward tiers CREATE-IF-ABSENT (ไม่reset quota ที่ถูกใชไปแล้ว) -----
+        ensureReward(repo, "10000001", "Supporter",   200, 500);
+        ensureReward(repo, "10000001", "Starter Kit", 1000, 50);
+        ensureReward(repo, "10000001", "Pro Kit",     3000, 10);
+
+        ensureReward(repo, "10000002", "Early Bird",  300, 100);
+        ensureReward(repo, "10000002", "Collector",  1200, 20);
+
+        ensureReward(repo, "10000003", "Donor",       500, 400);
+        ensureReward(repo, "10000003", "Sponsor",    3000, 40);
+
+        ensureReward(repo, "10000004", "Backer",      250, 200);
+        ensureReward(repo, "10000004", "Patron",     1500, 30);
+
+        ensureReward(repo, "10000005", "Sapling",     300, 300);
+        ensureReward(repo, "10000005", "Groves",     2000, 25);
+
+        ensureReward(repo, "10000006", "Taster",      150, 300);
+        ensureReward(repo, "10000006", "VIP Pass",    900, 40);
+
+        ensureReward(repo, "10000007", "Contributor", 400, 300);
+        ensureReward(repo, "10000007", "Sponsor",    2500, 25);
+
+        ensureReward(repo, "10000008", "Fan",         200, 300);
+        ensureReward(repo, "10000008", "Producer",   1800, 20);
+
+        //----- Pledges seed ครั้งแรกเท่านั้น (ถ้ายังไม่มีไฟล์) -----
+        if (repo.pledgeCount() == 0) {
+            //ตัวอย่างทั้ง SUCCESS/REJECT
+            controller.login("alice", "alice123");
+            controller.createPledge("10000001", Money.ofBaht(1000), "Starter Kit"); //SUCCESS
+            controller.createPledge("10000001", Money.ofBaht(100),  "Supporter");   //REJECT
+
+            controller.login("bob", "bob123");
+            controller.createPledge("10000002", Money.ofBaht(300),  "Early Bird");  //SUCCESS
+            controller.createPledge("10000002", Money.ofBaht(200),  "Early Bird");  //REJECT
+
+            controller.login("charlie", "charlie123");
+            controller.createPledge("10000003", Money.ofBaht(700),  null);          //SUCCESS(no reward)
+
+            controller.login("diana", "diana123");
+            controller.createPledge("10000004", Money.ofBaht(100),  "Backer");      //REJECT(below min)
+
+            controller.login("eric", "eric123");
+            controller.createPledge("10000005", Money.ofBaht(2200), "Groves");      //SUCCESS
+
+            controller.login("fiona", "fiona123");
+            controller.createPledge("10000006", Money.ofBaht(900),  "VIP Pass");    //SUCCESS
+
+            controller.login("george", "george123");
+            controller.createPledge("10000007", Money.ofBaht(500),  "Contributor"); //SUCCESS
+
+            controller.login("helen", "helen123");
+            controller.createPledge("10000008", Money.ofBaht(1800), "Producer");    //SUCCESS
+
+            // เพิ่มเติม: successful pledges เพื่อให้ progress ชัดเจนตั้งแต่เปิดแอป
+            controller.login("ivan", "ivan123");
+            controller.createPledge("10000001", Money.ofBaht(200),  "Supporter");   //SUCCESS
+
+            controller.login("jane", "jane123");
+            controller.createPledge("10000002", Money.ofBaht(1200), "Collector");   //SUCCESS
+
+            controller.login("alice", "alice123");
+            controller.createPledge("10000007", Money.ofBaht(2500), "Sponsor");     //SUCCESS
+
+            controller.login("bob", "bob123");
+            controller.createPledge("10000008", Money.ofBaht(200),  "Fan");         //SUCCESS
+
+            controller.login("charlie", "charlie123");
+            controller.createPledge("10000005", Money.ofBaht(300),  "Sapling");     //SUCCESS
+
+            controller.login("diana", "diana123");
+            controller.createPledge("10000006", Money.ofBaht(150),  "Taster");      //SUCCESS
+
+            controller.login("eric", "eric123");
+            controller.createPledge("10000003", Money.ofBaht(3000), "Sponsor");     //SUCCESS
+
+            controller.login("fiona", "fiona123");
+            controller.createPledge("10000004", Money.ofBaht(250),  "Backer");      //SUCCESS
+
+            controller.login("george", "george123");
+            controller.createPledge("10000002", Money.ofBaht(300),  "Early Bird");  //SUCCESS
+
+            controller.login("helen", "helen123");
+            controller.createPledge("10000001", Money.ofBaht(3000), "Pro Kit");     //SUCCESS
+
+            controller.logout();
+        }
+    }
+
+    //export pledge แบบ headless -------------
+    //java -cp out Main export [--format csv|jsonl] [--project ID] [--user ID] [--status SUCCESS|REJECT]
+    //                         [--from 2025-10-01T00:00] [--to 2025-11-01T00:00] [--live-only]
+    //                         [--out FILE | --per-project DIR [--threads N]]
+    private static void runExport(String[] args) {
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String a = args[i];
+            if (!a.startsWith("--")) continue;
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+            opt.put(a.substring(2), hasValue ? args[++i] : "true");
+        }
+
+        PledgeFilter filter = new PledgeFilter()
+                .project(opt.get("project"))
+                .user(opt.get("user"))
+                .status(opt.containsKey("status")
+                        ? enumValue(PledgeStatus.class, opt.get("status"), "usage: export --status SUCCESS|REJECT")
+                        : null)
+                .between(opt.containsKey("from") ? LocalDateTime.parse(opt.get("from")) : null,
+                         opt.containsKey("to") ? LocalDateTime.parse(opt.get("to")) : null)
+                .includeArchived(!opt.containsKey("live-only"));
+        PledgeExporter.Format format = "jsonl".equalsIgnoreCase(opt.get("format"))
+                ? PledgeExporter.Format.JSONL : PledgeExporter.Format.CSV;
+
+        //LAZY: ไม่ต้องโหลดประวัติ pledge ทั้งหมดเข้า mem ก่อน export
+        Repository repo = new Repository(Repository.PledgeLoadMode.LAZY, 1);
+        PledgeExporter exporter = new PledgeExporter(repo);
+        try {
+            if (opt.containsKey("per-project")) {
+                int threads = Integer.parseInt(opt.getOrDefault("threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+                var rows = exporter.exportPerProject(filter, format, Paths.get(opt.get("per-project")), threads);
+                System.err.println("[EXPORT] files=" + rows.size()
+                        + " rows=" + rows.values().stream().mapToLong(Long::longValue).sum());
+            } else if (opt.containsKey("out")) {
+                try (OutputStream os = Files.newOutputStream(Paths.get(opt.get("out")))) {
+                    System.err.println("[EXPORT] rows=" + exporter.export(filter, format, os));
+                }
+            } else {
+                System.err.println("[EXPORT] rows=" + exporter.export(filter, format, System.out));
+            }
+        } catch (IOException e) {
+            System.err.println("[EXPORT] failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    //นำเข้า pledge ชุดใหญ่แบบ headless -------------
+    //java -cp out Main ingest FILE [--report OUT.csv]
+    //FILE: userId,projectId,amount,tierName (header มีหรือไม่มีก็ได้)
+    private static void runIngest(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: ingest FILE [--report OUT.csv]");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        Repository repo = new Repository(Repository.PledgeLoadMode.LAZY, 1);
+        AppController controller = new AppController(repo, new Validation());
+        try {
+            var report = controller.ingestPledges(Paths.get(args[1]));
+            System.err.println("[INGEST] " + report);
+            String out = flagValue(args, "--report", null);
+            if (out != null) {
+                try (OutputStream os = Files.newOutputStream(Paths.get(out))) {
+                    report.writeCsv(os);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[INGEST] failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    //ตรวจ invariant ของ pledge/quota/raised ภายใต้หลาย thread (ไม่แตะ resources) -------------
+    //java -cp out Main stress [--seed N] [--ops N] [--threads N]   exit 1 ถ้าเจอ violation
+    private static void runStress(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        var harness = new StressHarness(Long.parseLong(flagValue(args, "--seed", "1")),
+                Integer.parseInt(flagValue(args, "--ops", "4000")),
+                Integer.parseInt(flagValue(args, "--threads", "4")));
+        try {
+            var report = harness.run();
+            System.err.println("[STRESS] " + report);
+            report.violations.forEach(v -> System.err.println("[STRESS]   " + v));
+            if (!report.isClean()) System.exit(1);
+        } catch (IOException e) {
+            System.err.println("[STRESS] failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    //--- helpers create-if-absent ---
+    private static void ensureProject(Repository repo, String id, String name, long goalBaht,
+                                      LocalDate deadline, String category) {
+        if (repo.getProject(id).isEmpty()) {
+            repo.upsertProject(new Project(id, name, Money.ofBaht(goalBaht), deadline, category));
+        }
+    }
+
+    private static void ensureReward(Repository repo, String projectId, String tierName,
+                                     long minAmountBaht, int quota) {
+        if (repo.getRewardTier(projectId, tierName).isEmpty()) {
+            repo.upsertRewardTier(new RewardTier(projectId, tierName, Money.ofBaht(minAmountBaht), quota));
+        }
+    }
+}
@@ -1,174 +1,462 @@
-package controller;
-
-import model.*;
-
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.*;
-import java.util.stream.Collectors;
-
-/**
- *AppController
- *
- *จัดการ login/logout 
- *จัดการ list/filter/sort ตัว Project
- *ตรวจ validation และสร้าง Pledge
- */
-public class AppController {
-
-    public enum SortMode { NEWEST, CLOSING_SOON, TOP_FUNDED }
-
-    private final Repository repo;
-    private final Validation validator;
-    private User currentUser;
-
-    public AppController(Repository repo, Validation validator) {
-        this.repo = repo;
-        this.validator = validator;
-    }
-
-    //--------- Auth ---------
-    public boolean login(String username, String password) {
-        Optional<User> u = repo.findUserByUsername(username);
-        if (u.isPresent() && Objects.equals(u.get().getPassword(), password)) {
-            currentUser = u.get();
-            return true;
-        }
-        return false;
-    }
-
-    public void logout() { currentUser = null; }
-    public boolean isLoggedIn() { return currentUser != null; }
-    public User getCurrentUser() { return currentUser; }
-
-    //--------- Query ---------
-    public List<Project> listProjects(SortMode sortMode, String categoryFilter, String keyword) {
-        List<Project> all = new ArrayList<>(repo.listProjects());
-
-        //filter category
-        if (categoryFilter != null && !categoryFilter.isBlank()) {
-            String cat = categoryFilter.trim().toLowerCase();
-            all = all.stream()
-                    .filter(p -> p.getCategory() != null && p.getCategory().toLowerCase().contains(cat))
-                    .collect(Collectors.toList());
-        }
-
-        //keyword in name
-        if (keyword != null && !keyword.isBlank()) {
-            String k = keyword.trim().toLowerCase();
-            all = all.stream()
-                    .filter(p -> p.getName() != null && p.getName().toLowerCase().contains(k))
-                    .collect(Collectors.toList());
-        }
-
-        //sort
-        Comparator<Project> cmp;
-        switch (sortMode) {
-            case CLOSING_SOON -> cmp = Comparator.comparing(Project::getDeadline, Comparator.nullsLast(Comparator.naturalOrder()));
-            case TOP_FUNDED -> cmp = Comparator.comparing(Project::getRaised, Comparator.nullsLast(Comparator.naturalOrder())).reversed();
-            case NEWEST -> {
-                //ไม่มี createdAt ใน Entity เดิจะใช้ projectIdเรียงจากมากไปน้อย 
-                cmp = Comparator.comparingInt(p -> safeParseInt(p.getId()));
-                cmp = cmp.reversed();
-            }
-            default -> cmp = Comparator.comparing(Project::getId);
-        }
-        all.sort(cmp);
-        return all;
-    }
-
-    public Optional<Project> getProject(String projectId) {
-        return repo.getProject(projectId);
-    }
-
-    public List<RewardTier> getRewardTiers(String projectId) {
-        return repo.listRewardTiers(projectId);
-    }
-
-    public long countSuccess() { return repo.countPledgeByStatus(PledgeStatus.SUCCESS); }
-    public long countReject()  { return repo.countPledgeByStatus(PledgeStatus.REJECT); }
-
-    //--------- Pledge ---------
-    public static class PledgeResult {
-        public final boolean ok;
-        public final String pledgeId;
-        public final List<String> errors;
-
-        public PledgeResult(boolean ok, String pledgeId, List<String> errors) {
-            this.ok = ok;
-            this.pledgeId = pledgeId;
-            this.errors = errors;
-        }
-    }
-
-    /**
-     *สร้างรายการสนับสนุนใหม่ *ต้อง login ก่อน
-     *ตรวจ:
-     *-มีผู้ใช้ล็อกอิน
-     *-โครงการต้องมีอยู่ และ deadline > วันนี้
-     *-amount > 0
-     *-ถ้าเลือก reward tier ต้องเป็นนamount ≥ minAmount และ quota > 0
-     */
-    public PledgeResult createPledge(String projectId, double amount, String tierNameOrNull) {
-        List<String> errors = new ArrayList<>();
-        if (!isLoggedIn()) errors.add("Please log in before pledging.");
-
-        Optional<Project> optProj = repo.getProject(projectId);
-        if (optProj.isEmpty()) errors.add("Project not found: " + projectId);
-
-        Project proj = optProj.orElse(null);
-        if (proj != null) {
-            if (!validator.isFutureDeadline(proj.getDeadline())) {
-                errors.add("Project deadline has passed (deadline: " + proj.getDeadline() + ").");
-            }
-        }
-
-        if (amount <= 0) errors.add("Amount must be greater than 0.");
-
-        RewardTier tier = null;
-        if (tierNameOrNull != null && !tierNameOrNull.isBlank() && proj != null) {
-            tier = repo.getRewardTier(projectId, tierNameOrNull).orElse(null);
-            if (tier == null) {
-                errors.add("Reward tier '" + tierNameOrNull + "' not found for this project.");
-            } else {
-                if (!validator.meetsMinAmount(amount, tier)) {
-                    errors.add("Amount is below this reward's minimum (min: " + tier.getMinAmount() + ").");
-                }
-                if (!validator.hasQuota(tier)) {
-                    errors.add("This reward has no remaining quota.");
-                }
-            }
-        } else {
-           
-            if (amount <= 0) errors.add("Amount must be greater than 0.");
-        }
-
-        String newId = nextPledgeId();
-
-        //ผลลัพธ์
-        if (!errors.isEmpty()) {
-            Pledge reject = new Pledge(newId,
-                    isLoggedIn() ? currentUser.getUserId() : "-",
-                    projectId, amount, tierNameOrNull, PledgeStatus.REJECT, LocalDateTime.now());
-            repo.addPledge(reject);
-            return new PledgeResult(false, newId, errors);
-        }
-
-        //สำเร็จ จะบันทึก + อัปเดตยอด/โควตา
-        Pledge success = new Pledge(newId,
-                currentUser.getUserId(),
-                projectId, amount, tierNameOrNull, PledgeStatus.SUCCESS, LocalDateTime.now());
-        repo.addPledge(success);
-        return new PledgeResult(true, newId, List.of());
-    }
-
-    //--------- Helpers ---------
-    private String nextPledgeId() {
-        int n = repo.listPledges().size() + 1;
-        return String.format("P%03d", n);
-    }
-
-    private int safeParseInt(String s) {
-        try { return Integer.parseInt(s); } catch (Exception e) { return 0; }
-    }
-}
+package controller;
+
+import model.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ *AppController
+ *
+ *จัดการ login/logout 
+ *จัดการ list/filter/sort ตัว Project
+ *ตรวจ validation และสร้าง Pledge
+ */
+public class AppController {
+
+    public enum SortMode { NEWEST, CLOSING_SOON, TOP_FUNDED, MOMENTUM }
+
+    /**
+     *คาดการณ์จากอัตรายอดล่าสุดของโครงการ (FundingRollup.ratePerDay)
+     *projectedTotal = raised + อัตรา × วันที่เหลือถึงสิ้นวัน deadline
+     *eta = วันที่คาดว่าถึง goal (วันนี้ถ้าถึงแล้ว, null ถ้าอัตราเป็น 0) อาจเลย deadline ได้
+     */
+    public static class Projection {
+        public final double ratePerDay;   //สตางค์/วัน
+        public final long projectedTotal; //สตางค์
+        public final LocalDate eta;
+
+        Projection(double ratePerDay, long projectedTotal, LocalDate eta) {
+            this.ratePerDay = ratePerDay;
+            this.projectedTotal = projectedTotal;
+            this.eta = eta;
+        }
+    }
+
+    private final Repository repo;
+    private final Validation validator;
+    private final ProjectQueryCache queryCache = new ProjectQueryCache();
+    private User currentUser;
+
+    //คิวรับ pledge แบบ async สร้างเมื่อใช้ครั้งแรก
+    private static final int SUBMIT_QUEUE_CAPACITY = 10_000;
+    private PledgeSubmitter submitter;
+    private DeadlineScheduler deadlineScheduler;
+    private ResourceWatcher resourceWatcher;
+
+    //ต่อ user 10/วินาที (burst 20), ทั้งระบบ 50k/วินาที
+    private volatile RateLimiter rateLimiter = new RateLimiter(10, 20, 50_000, 50_000);
+    static final String RATE_LIMITED = "Too many pledge requests, please slow down.";
+
+    public AppController(Repository repo, Validation validator) {
+        this.repo = repo;
+        this.validator = validator;
+        repo.subscribe(e -> queryCache.onEvent(e, repo.snapshot()));
+    }
+
+    //--------- Auth ---------
+    public boolean login(String username, String password) {
+        Optional<User> u = repo.findUserByUsername(username);
+        if (u.isPresent() && Objects.equals(u.get().getPassword(), password)) {
+            currentUser = u.get();
+            return true;
+        }
+        return false;
+    }
+
+    public void logout() { currentUser = null; }
+    public boolean isLoggedIn() { return currentUser != null; }
+    public User getCurrentUser() { return currentUser; }
+
+    //--------- Query ---------
+    public List<Project> listProjects(SortMode sortMode, String categoryFilter, String keyword) {
+        //refresh ซ้ำด้วย query เดิมได้ลำดับจาก cache (ถูกล้างเฉพาะตอนผลเปลี่ยนได้ ดู ProjectQueryCache)
+        String cat = ProjectQueryCache.normalize(categoryFilter);
+        String k = ProjectQueryCache.normalize(keyword);
+        List<Project> cached = queryCache.get(sortMode, cat, k, repo.snapshot());
+        if (cached != null) return cached;
+        long epoch = queryCache.epoch();
+
+        //โครงการที่ถึง deadline แล้วถูก DeadlineWheel เอาออกจาก active list
+        //เลือกหมวด: ดึงจาก index ของหมวดใน snapshot (ชื่อหมวดที่มีคำนี้ ไม่สนตัวพิมพ์) ไม่ต้องกรองทุกโครงการ
+        List<Project> all = !cat.isEmpty()
+                ? repo.listActiveProjects(categoryFilter.trim())
+                : new ArrayList<>(repo.listActiveProjects());
+
+        //keyword in name
+        if (!k.isEmpty()) {
+            all = all.stream()
+                    .filter(p -> p.getName() != null && p.getName().toLowerCase().contains(k))
+                    .collect(Collectors.toList());
+        }
+
+        //sort
+        Comparator<Project> cmp;
+        switch (sortMode) {
+            case CLOSING_SOON -> cmp = Comparator.comparing(Project::getDeadline, Comparator.nullsLast(Comparator.naturalOrder()));
+            case TOP_FUNDED -> cmp = Comparator.comparingLong(Project::getRaisedSatang).reversed();
+            case MOMENTUM -> {
+                //คำนวณอัตราครั้งเดียวต่อโครงการ (O(1) ต่อตัว) แล้วเรียงแบบเดียวกับ TOP_FUNDED
+                LocalDateTime now = LocalDateTime.now();
+                Map<String, Double> rate = new HashMap<>(all.size() * 2);
+                for (Project p : all) rate.put(p.getId(), repo.rollup().ratePerDay(p.getId(), now));
+                cmp = Comparator.<Project>comparingDouble(p -> rate.get(p.getId())).reversed()
+                        .thenComparing(Comparator.comparingLong(Project::getRaisedSatang).reversed());
+            }
+            case NEWEST -> {
+                //ไม่มี createdAt ใน Entity เดิจะใช้ projectIdเรียงจากมากไปน้อย 
+                cmp = Comparator.comparingInt(p -> safeParseInt(p.getId()));
+                cmp = cmp.reversed();
+            }
+            default -> cmp = Comparator.comparing(Project::getId);
+        }
+        all.sort(cmp);
+        queryCache.put(sortMode, cat, k, all, epoch);
+        return all;
+    }
+
+    /**hit/miss ของ cache ใน listProjects */
+    public ProjectQueryCache.Stats queryCacheStats() {
+        return queryCache.stats();
+    }
+
+    public Optional<Project> getProject(String projectId) {
+        return repo.getProject(projectId);
+    }
+
+    /**ยอดคาดการณ์ ณ deadline และวันที่คาดว่าถึง goal จากอัตรายอดล่าสุด (ไม่ไล่ประวัติ pledge) */
+    public Projection projection(Project p) {
+        double rate = repo.rollup().ratePerDay(p.getId());
+        LocalDateTime now = LocalDateTime.now();
+        double daysLeft = 0;
+        if (!p.isClosed() && p.getDeadline() != null) {
+            LocalDateTime end = p.getDeadline().plusDays(1).atStartOfDay();
+            daysLeft = Math.max(0, Duration.between(now, end).toMillis() / 86_400_000d);
+        }
+        long projected = p.getRaisedSatang() + Math.round(rate * daysLeft);
+
+        long missing = p.getGoalSatang() - p.getRaisedSatang();
+        LocalDate eta;
+        if (missing <= 0) eta = now.toLocalDate();
+        else if (rate <= 0) eta = null;
+        else eta = now.plusSeconds(Math.min((long) (missing / rate * 86_400), 100L * 365 * 86_400)).toLocalDate();
+        return new Projection(rate, projected, eta);
+    }
+
+    /**หมวดหมู่ทั้งหมดพร้อมจำนวนโครงการ/ที่ยังเปิด/goal/raised รวม (ใช้เติม dropdown) */
+    public List<CategoryFacets.Facet> categoryFacets() {
+        return repo.categoryFacets();
+    }
+
+    public List<RewardTier> getRewardTiers(String projectId) {
+        return repo.listRewardTiers(projectId);
+    }
+
+    /**ตรวจ raised/quota เทียบกับ pledge จริง (repair=true แก้ค่าที่ไม่ตรงให้ด้วย) */
+    public ReconcileReport reconcile(boolean repair) { return repo.reconcile(repair); }
+
+    /**นำเข้า pledge เป็นชุดจากไฟล์ CSV (userId,projectId,amount,tierName) ดู PledgeIngestor */
+    public PledgeIngestor.IngestReport ingestPledges(Path file) throws IOException {
+        return new PledgeIngestor(repo, this).ingest(file);
+    }
+
+    /**ให้ View ฟังการเปลี่ยนแปลงของ Repository (ดู RepoListener เรื่อง thread) */
+    public void subscribe(RepoListener l) { repo.subscribe(l); }
+    public void unsubscribe(RepoListener l) { repo.unsubscribe(l); }
+
+    /**snapshot เดียวสำหรับหน้า Stats (ยอดนับกับยอดเงินมาจาก version เดียวกัน) */
+    public RepoSnapshot statsSnapshot() { return repo.snapshot(); }
+
+    /**ยอด pledge/THB ล่าสุด n bucket (projectId = null คือทั้งระบบ) สำหรับกราฟหน้า Stats */
+    public FundingRollup.Window fundingWindow(String projectId, FundingRollup.Granularity g, int n) {
+        return repo.rollup().window(projectId, g, n);
+    }
+
+    public long countSuccess() { return repo.countPledgeByStatus(PledgeStatus.SUCCESS); }
+    public long countReject()  { return repo.countPledgeByStatus(PledgeStatus.REJECT); }
+
+    //--------- Pledge ---------
+    public static class PledgeResult {
+        public final boolean ok;
+        public final String pledgeId;
+        public final List<String> errors;
+
+        public PledgeResult(boolean ok, String pledgeId, List<String> errors) {
+            this.ok = ok;
+            this.pledgeId = pledgeId;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     *สร้างรายการสนับสนุนใหม่ *ต้อง login ก่อน
+     *ตรวจ:
+     *-มีผู้ใช้ล็อกอิน
+     *-โครงการต้องมีอยู่ และยังไม่ปิด (deadline > วันนี้ ดู Repository.closeExpired)
+     *-amount > 0 (หน่วยสตางค์ ดู Money)
+     *-ถ้าเลือก reward tier ต้องเป็นนamount ≥ minAmount และ quota > 0
+     */
+    public PledgeResult createPledge(String projectId, long amount, String tierNameOrNull) {
+        return createPledge(projectId, amount, tierNameOrNull, null);
+    }
+
+    /**
+     *เหมือน createPledge แต่รับ idempotency key จาก client (null = ไม่ใช้)
+     *ส่ง key เดิมซ้ำภายใน 24 ชม. ได้ PledgeResult เดิมโดยไม่บันทึกซ้ำ (ดู RequestIndex)
+     *key แยกตาม user คนละ user ใช้ key เดียวกันได้
+     */
+    public PledgeResult createPledge(String projectId, long amount, String tierNameOrNull, String requestKey) {
+        String userId = isLoggedIn() ? currentUser.getUserId() : null;
+        long requestHash = (requestKey == null || requestKey.isEmpty())
+                ? 0L : RequestIndex.hash((userId == null ? "-" : userId) + '\0' + requestKey);
+
+        //เกิน rate: ตัดทิ้งก่อนแตะ Repository (ไม่บันทึก REJECT) retry ก็กิน rate เหมือน request ปกติ
+        if (!rateLimiter.tryAcquire(userId)) {
+            return new PledgeResult(false, null, List.of(RATE_LIMITED));
+        }
+
+        //retry: คืนผลเดิมโดยไม่ตรวจใหม่
+        if (requestHash != 0) {
+            var prev = repo.findRequest(requestHash);
+            if (prev.isPresent()) {
+                RequestIndex.Outcome o = prev.get();
+                return new PledgeResult(o.pledgeId != null, o.pledgeId, o.errors);
+            }
+        }
+        //ใช้ instance กลางจาก dictionary เดียวกับที่ Repository โหลดมา (lookup: id ที่ไม่มีจริงไม่ถูกเพิ่มลงไป)
+        projectId = repo.symbols().lookup(projectId);
+        tierNameOrNull = repo.symbols().lookup(tierNameOrNull);
+
+        //ทางที่ผ่านได้แค่ mask = 0 ไม่สร้าง list/ข้อความ (ข้อความสร้างเฉพาะตอน reject)
+        RepoSnapshot snap = repo.snapshot();
+        int reasons = isLoggedIn()
+                ? repo.pledgeRules().check(snap, userId, projectId, amount, tierNameOrNull)
+                : RejectReason.NOT_LOGGED_IN.bit();
+        if (reasons == 0 && !validator.hasQuota(PledgeRules.findTier(snap, projectId, tierNameOrNull))) {
+            reasons = RejectReason.NO_QUOTA.bit();
+        }
+        if (reasons != 0) return reject(snap, userId, projectId, amount, tierNameOrNull, reasons, requestHash);
+
+        //สำเร็จ จะบันทึก + อัปเดตยอด/โควตา
+        //addPledgeOnce ตรวจ key ซ้ำอีกรอบใต้ lock (retry ที่มาพร้อมกันได้ pledgeId เดียวกัน)
+        String newId = repo.nextPledgeId();
+        Pledge success = new Pledge(newId, userId,
+                projectId, amount, tierNameOrNull, PledgeStatus.SUCCESS, LocalDateTime.now(), requestHash);
+        String appliedId = repo.addPledgeOnce(success);
+        if (appliedId == null) {
+            //แพ้ thread อื่นระหว่างตรวจกับบันทึก: ตรวจใหม่กับ snapshot ล่าสุดเพื่อได้เหตุผลเดียวกับทางปกติ
+            snap = repo.snapshot();
+            reasons = repo.pledgeRules().check(snap, userId, projectId, amount, tierNameOrNull);
+            if (reasons == 0) reasons = RejectReason.NO_QUOTA.bit();
+            return reject(snap, userId, projectId, amount, tierNameOrNull, reasons, requestHash);
+        }
+        return new PledgeResult(true, appliedId, List.of());
+    }
+
+    //ไม่ผ่าน: ลง RejectLog เป็น reason code ไม่ออกเลข pledge
+    private PledgeResult reject(RepoSnapshot snap, String userId, String projectId, long amount, String tierName,
+                                int reasons, long requestHash) {
+        List<String> errors = repo.pledgeRules().describe(reasons, snap, userId, projectId, amount, tierName);
+        repo.addReject(RejectLog.Entry.of(userId == null ? "-" : userId, projectId, amount, tierName, reasons));
+        repo.rememberReject(requestHash, errors);
+        return new PledgeResult(false, null, errors);
+    }
+
+    //--------- Cart ---------
+    /**รายการหนึ่งในตะกร้า (tierName null = ไม่เลือก reward) */
+    public static class CartItem {
+        public final String projectId;
+        public final long amount; //สตางค์
+        public final String tierName;
+
+        public CartItem(String projectId, long amount, String tierName) {
+            this.projectId = projectId;
+            this.amount = amount;
+            this.tierName = tierName;
+        }
+    }
+
+    /**ผลของ checkout: ok = ทุกรายการสำเร็จ (pledgeIds ตามลำดับในตะกร้า) ไม่งั้นไม่มีรายการไหนถูกบันทึก */
+    public static class CartResult {
+        public final boolean ok;
+        public final List<String> pledgeIds;
+        public final List<String> errors; //ขึ้นต้นด้วย "Item n:" ของรายการที่ไม่ผ่าน
+
+        public CartResult(boolean ok, List<String> pledgeIds, List<String> errors) {
+            this.ok = ok;
+            this.pledgeIds = pledgeIds;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     *สนับสนุนหลายโครงการ/หลาย tier ในครั้งเดียว ได้ทั้งหมดหรือไม่ได้เลย *ต้อง login ก่อน
+     *-ตรวจทุกรายการเหมือน createPledge โดยนับ quota และยอดต่อ user ของรายการก่อนหน้าในตะกร้าด้วย
+     *-ตรวจกับ snapshot ก่อนโดยไม่ล็อก แล้ว commit ใน Repository.inBatch ครั้งเดียว
+     * (lock เดียวของ Repository คุมทุกโครงการ จึงไม่มีลำดับการล็อกให้ deadlock)
+     * ถ้ามี writer อื่น commit ระหว่างนั้นก็ตรวจใหม่ใต้ lock ก่อนตัด quota
+     *-ผ่าน: เขียน projects/tiers/pledges ครั้งเดียว publish snapshot ครั้งเดียว (เท่ากับ pledge เดียว)
+     *-ไม่ผ่าน: ทุกรายการลง RejectLog (รายการที่ผ่านแต่ตกไปพร้อมตะกร้าเป็น OTHER) ไม่แตะยอด/quota
+     *กิน rate 1 ครั้งต่อตะกร้า
+     */
+    public CartResult checkout(List<CartItem> items) {
+        if (items == null || items.isEmpty()) return new CartResult(false, List.of(), List.of("Cart is empty."));
+        String userId = isLoggedIn() ? currentUser.getUserId() : null;
+        if (!rateLimiter.tryAcquire(userId)) return new CartResult(false, List.of(), List.of(RATE_LIMITED));
+
+        List<CartItem> cart = new ArrayList<>(items.size());
+        for (CartItem it : items) {
+            cart.add(new CartItem(repo.symbols().lookup(it.projectId), it.amount, repo.symbols().lookup(it.tierName)));
+        }
+        int[] reasons = new int[cart.size()];
+        if (userId == null) {
+            Arrays.fill(reasons, RejectReason.NOT_LOGGED_IN.bit());
+            return rejectCart(repo.snapshot(), userId, cart, reasons);
+        }
+
+        RepoSnapshot snap = repo.snapshot();
+        if (checkCart(snap, userId, cart, reasons)) return rejectCart(snap, userId, cart, reasons);
+
+        CartResult[] out = new CartResult[1];
+        repo.inBatch(() -> {
+            RepoSnapshot now = repo.snapshot();
+            if (now.getVersion() != snap.getVersion() && checkCart(now, userId, cart, reasons)) {
+                out[0] = rejectCart(now, userId, cart, reasons);
+                return;
+            }
+            List<Pledge> pledges = new ArrayList<>(cart.size());
+            List<String> ids = new ArrayList<>(cart.size());
+            LocalDateTime at = LocalDateTime.now();
+            for (CartItem it : cart) {
+                String id = repo.nextPledgeId();
+                ids.add(id);
+                pledges.add(new Pledge(id, userId, it.projectId, it.amount, it.tierName, PledgeStatus.SUCCESS, at));
+            }
+            repo.addPledges(pledges);
+            out[0] = new CartResult(true, List.copyOf(ids), List.of());
+        });
+        return out[0];
+    }
+
+    //ตรวจทุกรายการกับ snap เติม reasons ทีละช่อง คืน true ถ้ามีรายการที่ไม่ผ่าน
+    private boolean checkCart(RepoSnapshot snap, String userId, List<CartItem> cart, int[] reasons) {
+        QuotaLedger quota = new QuotaLedger();
+        Map<String, Long> pending = new HashMap<>(); //projectId -> ยอดของรายการก่อนหน้าที่ผ่าน
+        boolean failed = false;
+        for (int i = 0; i < cart.size(); i++) {
+            CartItem it = cart.get(i);
+            int m = repo.pledgeRules().check(snap, userId, it.projectId, it.amount, it.tierName,
+                    pending.getOrDefault(it.projectId, 0L));
+            RewardTier tier = PledgeRules.findTier(snap, it.projectId, it.tierName);
+            if (m == 0 && (!validator.hasQuota(tier) || !quota.hasRemaining(tier))) m = RejectReason.NO_QUOTA.bit();
+            if (m == 0) {
+                quota.consume(tier);
+                pending.merge(it.projectId, it.amount, Long::sum);
+            }
+            reasons[i] = m;
+            failed |= m != 0;
+        }
+        return failed;
+    }
+
+    //ทั้งตะกร้าไม่ผ่าน: ลง RejectLog ครั้งเดียว ข้อความเฉพาะรายการที่ผิดเอง
+    private CartResult rejectCart(RepoSnapshot snap, String userId, List<CartItem> cart, int[] reasons) {
+        List<String> errors = new ArrayList<>();
+        List<RejectLog.Entry> entries = new ArrayList<>(cart.size());
+        for (int i = 0; i < cart.size(); i++) {
+            CartItem it = cart.get(i);
+            if (reasons[i] != 0) {
+                for (String e : repo.pledgeRules().describe(reasons[i], snap, userId, it.projectId, it.amount, it.tierName)) {
+                    errors.add("Item " + (i + 1) + ": " + e);
+                }
+            }
+            entries.add(RejectLog.Entry.of(userId == null ? "-" : userId, it.projectId, it.amount, it.tierName,
+                    reasons[i] != 0 ? reasons[i] : RejectReason.OTHER.bit()));
+        }
+        repo.addRejects(entries);
+        return new CartResult(false, List.of(), errors);
+    }
+
+    /**
+     *createPledge แบบไม่ block: เข้าคิวแล้วคืน future ทันที (ดู PledgeSubmitter)
+     *future เสร็จเมื่อ pledge ถูกเขียนลงไฟล์แล้ว (ไม่ได้ fsync), reject ชัดเจนเสร็จทันทีไม่เข้าคิว
+     *คิวเต็ม -> future fail ด้วย RejectedExecutionException
+     */
+    public CompletableFuture<PledgeResult> submitPledge(String projectId, long amount, String tierNameOrNull) {
+        String userId = isLoggedIn() ? currentUser.getUserId() : null;
+        if (!rateLimiter.tryAcquire(userId)) {
+            return CompletableFuture.completedFuture(new PledgeResult(false, null, List.of(RATE_LIMITED)));
+        }
+        return submitter().submit(userId, projectId, amount, tierNameOrNull);
+    }
+
+    /**ค่า metric ของการตัด request (allowed/shed) */
+    public RateLimiter rateLimiter() { return rateLimiter; }
+
+    /**เปลี่ยนเกณฑ์ rate (เช่น batch/service ที่ต้องการสูงกว่าค่าเริ่มต้น) */
+    public void setRateLimiter(RateLimiter limiter) { this.rateLimiter = limiter; }
+
+    public synchronized PledgeSubmitter submitter() {
+        if (submitter == null) submitter = new PledgeSubmitter(repo, this, SUBMIT_QUEUE_CAPACITY);
+        return submitter;
+    }
+
+    /**ปิดโครงการอัตโนมัติเมื่อถึง deadline (UI/service ที่รันข้ามวัน) */
+    public synchronized void startDeadlineScheduler() {
+        if (deadlineScheduler == null) {
+            deadlineScheduler = new DeadlineScheduler(repo);
+            deadlineScheduler.start();
+        }
+    }
+
+    /**รับการแก้ projects.csv / reward_tiers.csv ด้วยมือระหว่างรันโดยไม่ต้อง restart */
+    public synchronized void startResourceWatcher() {
+        if (resourceWatcher != null) return;
+        try {
+            resourceWatcher = new ResourceWatcher(repo);
+            resourceWatcher.start();
+        } catch (IOException e) {
+            e.printStackTrace(); //ระบบไฟล์ไม่รองรับ watch: ทำงานต่อได้ แค่ต้อง restart เพื่ออ่านไฟล์ใหม่
+        }
+    }
+
+    /**เขียน pledge ที่ค้างในคิว async ให้หมดก่อนปิดโปรแกรม แล้ว checkpoint index ของ LAZY */
+    public synchronized void shutdown() {
+        if (resourceWatcher != null) resourceWatcher.close();
+        if (deadlineScheduler != null) deadlineScheduler.close();
+        if (submitter != null) submitter.close();
+        repo.checkpoint();
+    }
+
+    /**
+     *ตรวจทุกเงื่อนไขยกเว้น login และ quota (สองอย่างนี้ขึ้นกับผู้เรียก/ลำดับ pledge) ผ่าน PledgeRules
+     *หยุดที่กฎแรกที่ไม่ผ่าน เติมข้อความลง errors คืน tier ที่เลือก (null ถ้าไม่ได้เลือกหรือไม่ผ่าน)
+     *ใช้ร่วมกับ PledgeIngestor/PledgeSubmitter ผลจึงเหมือนเรียก createPledge ทีละรายการ
+     */
+    RewardTier checkPledge(RepoSnapshot snap, String userId, String projectId, long amount, String tierNameOrNull,
+                           List<String> errors) {
+        return checkPledge(snap, userId, projectId, amount, tierNameOrNull, 0, errors);
+    }
+
+    /**เหมือนข้างบน pending = ยอดที่ผ่านแล้วใน batch เดียวกันของ user นี้ในโครงการนี้ (ยังไม่ commit) */
+    RewardTier checkPledge(RepoSnapshot snap, String userId, String projectId, long amount, String tierNameOrNull,
+                           long pending, List<String> errors) {
+        int reasons = repo.pledgeRules().check(snap, userId, projectId, amount, tierNameOrNull, pending);
+        if (reasons != 0) {
+            errors.addAll(repo.pledgeRules().describe(reasons, snap, userId, projectId, amount, tierNameOrNull));
+            return null;
+        }
+        return PledgeRules.findTier(snap, projectId, tierNameOrNull);
+    }
+
+    //--------- Helpers ---------
+    private int safeParseInt(String s) {
+        try { return Integer.parseInt(s); } catch (Exception e) { return 0; }
+    }
+}
@@ -0,0 +1,51 @@
+package controller;
+
+import model.Repository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *DeadlineScheduler
+ *เรียก Repository.closeExpired ตอนเริ่ม และทุกหลังเที่ยงคืน (คำนวณรอบถัดไปใหม่ทุกครั้ง เผื่อเวลาเปลี่ยน)
+ *งานหาโครงการที่หมดอายุอยู่ใน DeadlineWheel ของ Repository ตัวนี้แค่ปลุกให้ตรงวัน
+ */
+public class DeadlineScheduler implements AutoCloseable {
+
+    private final Repository repo;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "deadline-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DeadlineScheduler(Repository repo) {
+        this.repo = repo;
+    }
+
+    public void start() {
+        timer.execute(this::tick);
+    }
+
+    private void tick() {
+        try {
+            int n = repo.closeExpired(LocalDate.now());
+            if (n > 0) System.out.println("[DEADLINE] closed projects=" + n);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        //ตื่นหลังเที่ยงคืนนิดหน่อย จะได้ไม่ตกอยู่วันเดิมเพราะนาฬิกาคลาดเคลื่อน
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().plusDays(1).atStartOfDay().plusSeconds(1);
+        timer.schedule(this::tick, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
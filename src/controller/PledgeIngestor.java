@@ -0,0 +1,211 @@
+package controller;
+
+import model.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ *PledgeIngestor
+ *นำเข้า pledge เป็นชุดจากไฟล์ของ partner (userId,projectId,amount,tierName)
+ *
+ *ขั้นตอน
+ *1.parse    : อ่านทั้งไฟล์เป็นแถว (amount อ่านไม่ออก = REJECT ไม่สร้าง pledge)
+ *2.validate : ตรวจเงื่อนไขที่ไม่ขึ้นกับลำดับแบบขนานเทียบกับ snapshot (project, deadline, amount, tier, min)
+ *3.apply    : ภายใต้ lock ของ Repository ไล่ตามลำดับไฟล์ ตรวจ quota + ออกเลข pledge
+ *4.persist  : addPledges/addRejects ครั้งเดียวใน inBatch เขียนไฟล์ครั้งเดียว (reject ไม่ได้เลข pledge)
+ *
+ *ข้อความ error มาจาก AppController.checkPledge ตัวเดียวกับ createPledge
+ *ผลจึงเหมือนเรียก createPledge ทีละแถว (ต่างแค่ userId มาจากไฟล์แทนคนที่ login)
+ */
+public class PledgeIngestor {
+
+    /**ผลต่อแถวของไฟล์ input */
+    public static class RowResult {
+        public final int line;
+        public final String pledgeId;   //null ถ้าไม่ผ่าน
+        public final PledgeStatus status;
+        public final List<String> errors;
+
+        RowResult(int line, String pledgeId, PledgeStatus status, List<String> errors) {
+            this.line = line;
+            this.pledgeId = pledgeId;
+            this.status = status;
+            this.errors = errors;
+        }
+    }
+
+    public static class IngestReport {
+        public final List<RowResult> rows;
+        public final long success, reject;
+        public final long parseMs, validateMs, applyMs;
+
+        IngestReport(List<RowResult> rows, long parseMs, long validateMs, long applyMs) {
+            this.rows = rows;
+            this.success = rows.stream().filter(r -> r.status == PledgeStatus.SUCCESS).count();
+            this.reject = rows.size() - success;
+            this.parseMs = parseMs;
+            this.validateMs = validateMs;
+            this.applyMs = applyMs;
+        }
+
+        /**เขียน report เป็น CSV: line,pledgeId,status,reason */
+        public void writeCsv(OutputStream out) throws IOException {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            w.write("line,pledgeId,status,reason\n");
+            for (RowResult r : rows) {
+                w.write(r.line + "," + (r.pledgeId == null ? "" : r.pledgeId) + "," + r.status + ","
+                        + String.join("; ", r.errors).replace(",", " ") + "\n");
+            }
+            w.flush();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rows=%d success=%d reject=%d parse=%dms validate=%dms apply=%dms",
+                    rows.size(), success, reject, parseMs, validateMs, applyMs);
+        }
+    }
+
+    //แถวที่ parse แล้ว
+    private static final class Row {
+        final int line;
+        final String userId, projectId, tierName;
+        final long amount;
+        final String parseError;
+
+        Row(int line, String userId, String projectId, long amount, String tierName, String parseError) {
+            this.line = line;
+            this.userId = userId;
+            this.projectId = projectId;
+            this.amount = amount;
+            this.tierName = tierName;
+            this.parseError = parseError;
+        }
+    }
+
+    private final Repository repo;
+    private final AppController controller;
+
+    public PledgeIngestor(Repository repo, AppController controller) {
+        this.repo = repo;
+        this.controller = controller;
+    }
+
+    public IngestReport ingest(Path file) throws IOException {
+        long t0 = System.nanoTime();
+        List<Row> rows = parse(file);
+        long t1 = System.nanoTime();
+
+        RepoSnapshot snap = repo.snapshot();
+        List<String>[] errors = newErrors(rows.size());
+        RewardTier[] tiers = new RewardTier[rows.size()];
+        validate(rows, snap, errors, tiers);
+        long t2 = System.nanoTime();
+
+        RowResult[] results = new RowResult[rows.size()];
+        repo.inBatch(() -> apply(rows, snap, errors, tiers, results));
+        long t3 = System.nanoTime();
+
+        return new IngestReport(Arrays.asList(results),
+                (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000, (t3 - t2) / 1_000_000);
+    }
+
+    //---------- stages ----------
+
+    private List<Row> parse(Path file) throws IOException {
+        SymbolTable symbols = repo.symbols();
+        List<Row> rows = new ArrayList<>();
+        try (var br = Files.newBufferedReader(file)) {
+            String line;
+            int n = 0;
+            while ((line = br.readLine()) != null) {
+                n++;
+                if (line.isBlank() || (n == 1 && line.startsWith("userId"))) continue;
+                String[] parts = line.split(",", -1);
+                String tier = parts.length > 3 && !parts[3].isBlank() ? symbols.lookup(parts[3].trim()) : null;
+                String user = parts.length > 0 ? symbols.lookup(parts[0].trim()) : "";
+                String project = parts.length > 1 ? symbols.lookup(parts[1].trim()) : "";
+                long amount = 0;
+                String err = null;
+                try {
+                    amount = Money.parse(parts.length > 2 ? parts[2] : "");
+                } catch (NumberFormatException e) {
+                    err = "Invalid amount: " + (parts.length > 2 ? parts[2] : "");
+                }
+                rows.add(new Row(n, user, project, amount, tier, err));
+            }
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String>[] newErrors(int n) { return (List<String>[]) new List<?>[n]; }
+
+    //แต่ละแถวเขียนเฉพาะช่อง i ของตัวเอง จึงรันขนานได้โดยไม่ต้องล็อก
+    private void validate(List<Row> rows, RepoSnapshot snap, List<String>[] errors, RewardTier[] tiers) {
+        Set<String> users = repo.userIds();
+        IntStream.range(0, rows.size()).parallel().forEach(i -> {
+            Row r = rows.get(i);
+            List<String> errs = new ArrayList<>(2);
+            if (r.parseError != null) {
+                errs.add(r.parseError);
+            } else {
+                if (!users.contains(r.userId)) errs.add("User not found: " + r.userId);
+                tiers[i] = controller.checkPledge(snap, r.userId, r.projectId, r.amount, r.tierName, errs);
+            }
+            errors[i] = errs;
+        });
+    }
+
+    //ทำใต้ lock ของ Repository (inBatch) ตามลำดับไฟล์
+    private void apply(List<Row> rows, RepoSnapshot validatedAgainst, List<String>[] errors, RewardTier[] tiers,
+                       RowResult[] results) {
+        RepoSnapshot now = repo.snapshot();
+        if (now.getVersion() != validatedAgainst.getVersion()) {
+            //มี writer อื่นเปลี่ยนข้อมูลระหว่างตรวจ: ตรวจใหม่กับ state ปัจจุบัน (ตอนนี้ถือ lock อยู่แล้ว)
+            validate(rows, now, errors, tiers);
+        }
+
+        QuotaLedger quota = new QuotaLedger();
+        PledgeRules rules = repo.pledgeRules();
+        Map<String, Long> pending = new HashMap<>(); //(project, user) -> ยอดที่ผ่านแล้วในไฟล์นี้ (เฉพาะโครงการที่มี maxPerUser)
+        List<Pledge> accepted = new ArrayList<>(rows.size());
+        List<RejectLog.Entry> rejected = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Row r = rows.get(i);
+            List<String> errs = errors[i];
+            if (r.parseError != null) {
+                results[i] = new RowResult(r.line, null, PledgeStatus.REJECT, errs);
+                continue;
+            }
+
+            RewardTier tier = tiers[i];
+            String key = rules.limitsPerUser(r.projectId) ? PledgeRules.pendingKey(r.projectId, r.userId) : null;
+            long pend = (key == null) ? 0 : pending.getOrDefault(key, 0L);
+            if (errs.isEmpty() && pend > 0) {
+                //validate ตรวจแบบขนานโดยไม่รู้ยอดของแถวก่อนหน้า ตรวจซ้ำตามลำดับไฟล์พร้อมยอดที่ผ่านแล้ว
+                tier = controller.checkPledge(now, r.userId, r.projectId, r.amount, r.tierName, pend, errs);
+            }
+            if (errs.isEmpty() && !quota.hasRemaining(tier)) errs.add("This reward has no remaining quota.");
+
+            if (!errs.isEmpty()) {
+                rejected.add(RejectLog.Entry.of(r.userId, r.projectId, r.amount, r.tierName, errs));
+                results[i] = new RowResult(r.line, null, PledgeStatus.REJECT, errs);
+                continue;
+            }
+            quota.consume(tier);
+            if (key != null) pending.merge(key, r.amount, Long::sum);
+            String id = repo.nextPledgeId();
+            accepted.add(new Pledge(id, r.userId, r.projectId, r.amount, r.tierName,
+                    PledgeStatus.SUCCESS, LocalDateTime.now()));
+            results[i] = new RowResult(r.line, id, PledgeStatus.SUCCESS, errs);
+        }
+        repo.addPledges(accepted);
+        repo.addRejects(rejected);
+    }
+}
@@ -0,0 +1,208 @@
+package controller;
+
+import controller.AppController.PledgeResult;
+import model.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *PledgeSubmitter
+ *รับ pledge แบบไม่ block ผู้เรียก: ตรวจเบื้องต้นแล้วเข้าคิวที่มีขนาดจำกัด คืน CompletableFuture
+ *
+ *-reject ชัดเจน (ไม่ได้ login, ไม่พบ project, หมด deadline, amount <= 0, tier ไม่มี/ต่ำกว่า min)
+ * future เสร็จทันทีตอน submit ไม่กินที่ในคิวหลัก (request เสียจำนวนมากจึงไม่ดัน request ที่ถูกให้โดนปฏิเสธ)
+ * ตัว reject เข้าคิวแยกเพื่อลง RejectLog ใน batch ถัดไป คิวแยกเต็มก็บันทึกตรงด้วย addReject
+ *-ที่เหลือ worker thread เดียวดึงจากคิวเป็นก้อน (group commit) ตรวจซ้ำกับ snapshot ปัจจุบัน
+ * + quota ตามลำดับที่เข้าคิว แล้วบันทึกด้วย inBatch/addPledges+addRejects ครั้งเดียว
+ * future เสร็จหลัง inBatch คืน (เขียนลงไฟล์ผ่าน OS แล้ว แต่ไม่ได้ fsync ไฟดับทันทีอาจหายได้)
+ *-คิวเต็ม: future fail ด้วย RejectedExecutionException (ไม่บันทึกอะไร) ผู้เรียกเห็น backpressure ตรงๆ
+ *-close: หยุดรับงาน (ตรวจ running กับ offer ใต้ lock เดียวกัน) เขียนที่ค้างให้หมด ที่ยังเหลือถูก fail
+ */
+public class PledgeSubmitter implements AutoCloseable {
+
+    //จำนวน pledge สูงสุดต่อการเขียนไฟล์ 1 ครั้ง
+    private static final int MAX_BATCH = 1024;
+
+    private static final class Pending {
+        final String userId, projectId, tierName;
+        final long amount;
+        final List<String> errors;
+        final CompletableFuture<PledgeResult> future;
+
+        Pending(String userId, String projectId, long amount, String tierName, List<String> errors,
+                CompletableFuture<PledgeResult> future) {
+            this.userId = userId;
+            this.projectId = projectId;
+            this.amount = amount;
+            this.tierName = tierName;
+            this.errors = errors;
+            this.future = future;
+        }
+    }
+
+    private final Repository repo;
+    private final AppController controller;
+    private final BlockingQueue<Pending> queue;
+    private final BlockingQueue<RejectLog.Entry> rejects; //reject ที่ตอบไปแล้ว รอลง RejectLog
+    private final Thread worker;
+    private volatile boolean running = true; //เปลี่ยนเป็น false ใต้ lock ของ this เท่านั้น
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();   //โดนปฏิเสธเพราะคิวเต็ม
+    private final AtomicLong batches = new AtomicLong();
+
+    public PledgeSubmitter(Repository repo, AppController controller, int capacity) {
+        this.repo = repo;
+        this.controller = controller;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.rejects = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::drain, "pledge-submitter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**userId = null คือยังไม่ได้ login */
+    public CompletableFuture<PledgeResult> submit(String userId, String projectId, long amount, String tierNameOrNull) {
+        CompletableFuture<PledgeResult> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("pledge submitter is closed"));
+            return future;
+        }
+        projectId = repo.symbols().lookup(projectId);
+        tierNameOrNull = repo.symbols().lookup(tierNameOrNull);
+
+        List<String> errors = new ArrayList<>(2);
+        if (userId == null) errors.add("Please log in before pledging.");
+        controller.checkPledge(repo.snapshot(), userId, projectId, amount, tierNameOrNull, errors);
+        String user = (userId == null) ? "-" : userId;
+
+        if (!errors.isEmpty()) {
+            RejectLog.Entry e = RejectLog.Entry.of(user, projectId, amount, tierNameOrNull, errors);
+            boolean queued;
+            synchronized (this) { queued = running && rejects.offer(e); }
+            if (!queued) repo.addReject(e);
+            submitted.incrementAndGet();
+            future.complete(new PledgeResult(false, null, errors));
+            return future;
+        }
+
+        Pending p = new Pending(user, projectId, amount, tierNameOrNull, errors, future);
+        synchronized (this) {
+            if (!running) {
+                future.completeExceptionally(new RejectedExecutionException("pledge submitter is closed"));
+                return future;
+            }
+            if (!queue.offer(p)) {
+                refused.incrementAndGet();
+                future.completeExceptionally(new RejectedExecutionException(
+                        "pledge queue full (" + queue.size() + " pending)"));
+                return future;
+            }
+        }
+        submitted.incrementAndGet();
+        return future;
+    }
+
+    //---------- backpressure / metrics ----------
+
+    public int queueDepth() { return queue.size(); }
+    public int remainingCapacity() { return queue.remainingCapacity(); }
+    public long submittedCount() { return submitted.get(); }
+    public long refusedCount() { return refused.get(); }
+    public long batchCount() { return batches.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("submitted=%d refused=%d batches=%d depth=%d",
+                submitted.get(), refused.get(), batches.get(), queue.size());
+    }
+
+    /**หยุดรับงานใหม่ เขียนที่ค้างในคิวให้หมดแล้วจบ worker (ที่ worker ไม่ได้เขียนถูก fail ไม่ค้างตลอดไป) */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false; //หลังจากนี้ submit ไม่ offer เข้าคิวได้อีก
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Pending p : left) p.future.completeExceptionally(new RejectedExecutionException("pledge submitter is closed"));
+        List<RejectLog.Entry> leftRejects = new ArrayList<>();
+        rejects.drainTo(leftRejects);
+        repo.addRejects(leftRejects);
+    }
+
+    //---------- worker ----------
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        List<RejectLog.Entry> early = new ArrayList<>();
+        while (running || !queue.isEmpty() || !rejects.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+                rejects.drainTo(early, MAX_BATCH);
+                if (!batch.isEmpty() || !early.isEmpty()) apply(batch, early);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                for (Pending p : batch) p.future.completeExceptionally(e);
+            }
+            batch.clear();
+            early.clear();
+        }
+    }
+
+    //ใต้ lock ของ Repository: ตรวจซ้ำกับ state ปัจจุบัน (อาจเปลี่ยนหลัง submit) + quota ตามลำดับคิว
+    //early = reject ที่ตอบไปตั้งแต่ตอน submit แล้ว ลง RejectLog พร้อมกัน
+    private void apply(List<Pending> batch, List<RejectLog.Entry> early) {
+        PledgeResult[] results = new PledgeResult[batch.size()];
+        repo.inBatch(() -> {
+            RepoSnapshot snap = repo.snapshot();
+            QuotaLedger quota = new QuotaLedger();
+            PledgeRules rules = repo.pledgeRules();
+            Map<String, Long> pending = new HashMap<>(); //(project, user) -> ยอดที่ผ่านแล้วใน batch นี้ (เฉพาะโครงการที่มี maxPerUser)
+            List<Pledge> pledges = new ArrayList<>(batch.size());
+            List<RejectLog.Entry> rejected = new ArrayList<>(early);
+            for (int i = 0; i < batch.size(); i++) {
+                Pending s = batch.get(i);
+                List<String> errors = s.errors;
+                String key = rules.limitsPerUser(s.projectId) ? PledgeRules.pendingKey(s.projectId, s.userId) : null;
+                long pend = (key == null) ? 0 : pending.getOrDefault(key, 0L);
+                RewardTier tier = controller.checkPledge(snap, s.userId, s.projectId, s.amount, s.tierName, pend, errors);
+                if (errors.isEmpty() && !quota.hasRemaining(tier)) errors.add("This reward has no remaining quota.");
+                if (!errors.isEmpty()) {
+                    rejected.add(RejectLog.Entry.of(s.userId, s.projectId, s.amount, s.tierName, errors));
+                    results[i] = new PledgeResult(false, null, errors);
+                    continue;
+                }
+                quota.consume(tier);
+                if (key != null) pending.merge(key, s.amount, Long::sum);
+                String id = repo.nextPledgeId();
+                pledges.add(new Pledge(id, s.userId, s.projectId, s.amount, s.tierName,
+                        PledgeStatus.SUCCESS, LocalDateTime.now()));
+                results[i] = new PledgeResult(true, id, List.of());
+            }
+            repo.addPledges(pledges);
+            repo.addRejects(rejected);
+        });
+        batches.incrementAndGet();
+
+        //inBatch คืนแล้ว = เขียนไฟล์แล้ว
+        for (int i = 0; i < batch.size(); i++) batch.get(i).future.complete(results[i]);
+    }
+}
@@ -0,0 +1,177 @@
+package controller;
+
+import model.Project;
+import model.RepoEvent;
+import model.RepoSnapshot;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ *ProjectQueryCache
+ *จำผลของ listProjects ต่อชุด (sort, category, keyword) dashboard ที่ refresh ซ้ำจะไม่ต้องกรอง/เรียงใหม่
+ *
+ *-เก็บแค่ลำดับ projectId ตอนอ่านค่อยดึง Project จาก snapshot ล่าสุด (raised ที่แสดงเป็นค่าปัจจุบันเสมอ)
+ *-ไม่เกิน MAX_ENTRIES ชุด ชุดที่ไม่ได้ใช้นานสุดถูกไล่ออกก่อน (LRU)
+ *-ล้างเฉพาะชุดที่ผลอาจเปลี่ยนจริง (ดู onEvent)
+ *
+ *ผลที่คำนวณจาก snapshot เก่าแล้วมี event มาระหว่างนั้น จะไม่ถูกเก็บ (เทียบ epoch ก่อน/หลังคำนวณ)
+ */
+public final class ProjectQueryCache {
+
+    static final int MAX_ENTRIES = 64;
+
+    /**ตัวเลขสำหรับดูว่า cache ช่วยได้แค่ไหน */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions; //ชุดที่ถูกล้างเพราะข้อมูลเปลี่ยน (ไม่นับ LRU)
+        public final int size;
+
+        Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.1f%% evictions=%d size=%d",
+                    hits, misses, hitRate() * 100, evictions, size);
+        }
+    }
+
+    //ผลของ query หนึ่งชุด: filter ที่ normalize แล้ว + id ตามลำดับ
+    private static final class Entry {
+        final AppController.SortMode sort;
+        final String category; //lower case, "" = ทุกหมวด
+        final String keyword;  //lower case, "" = ไม่กรอง
+        final String[] ids;
+        final Set<String> idSet;
+
+        Entry(AppController.SortMode sort, String category, String keyword, List<Project> result) {
+            this.sort = sort;
+            this.category = category;
+            this.keyword = keyword;
+            this.ids = new String[result.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = result.get(i).getId();
+            this.idSet = new HashSet<>(Arrays.asList(ids));
+        }
+
+        //โครงการนี้ (ค่าใหม่) ผ่าน filter ของชุดนี้ไหม
+        boolean matches(Project p) {
+            if (p.isClosed()) return false;
+            if (!category.isEmpty() && (p.getCategory() == null || !p.getCategory().toLowerCase().contains(category))) {
+                return false;
+            }
+            return keyword.isEmpty() || (p.getName() != null && p.getName().toLowerCase().contains(keyword));
+        }
+
+        boolean dependsOnRaised() {
+            return sort == AppController.SortMode.TOP_FUNDED || sort == AppController.SortMode.MOMENTUM;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long epoch; //เพิ่มทุกครั้งที่มี event ที่อาจทำให้ผลเปลี่ยน
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    static String normalize(String s) {
+        return (s == null) ? "" : s.trim().toLowerCase();
+    }
+
+    private static String key(AppController.SortMode sort, String category, String keyword) {
+        return sort.name() + '\0' + category + '\0' + keyword;
+    }
+
+    /**ผลที่จำไว้ (ดึง Project จาก snap) หรือ null ถ้าไม่มี category/keyword ต้อง normalize แล้ว */
+    List<Project> get(AppController.SortMode sort, String category, String keyword, RepoSnapshot snap) {
+        String k = key(sort, category, keyword);
+        Entry e;
+        synchronized (this) { e = entries.get(k); }
+        if (e != null) {
+            List<Project> out = new ArrayList<>(e.ids.length);
+            for (String id : e.ids) {
+                Project p = snap.getProject(id).orElse(null);
+                if (p == null || p.isClosed()) { //snapshot ใหม่กว่า event ที่ยังมาไม่ถึง ถือว่าไม่มี
+                    out = null;
+                    break;
+                }
+                out.add(p);
+            }
+            if (out != null) {
+                hits.incrementAndGet();
+                return out;
+            }
+            synchronized (this) { entries.remove(k, e); }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**epoch ก่อนเริ่มคำนวณ ส่งกลับมาใน put */
+    synchronized long epoch() { return epoch; }
+
+    /**เก็บผลที่เพิ่งคำนวณ (ข้ามถ้ามี event มาหลังเริ่มคำนวณ) */
+    synchronized void put(AppController.SortMode sort, String category, String keyword, List<Project> result,
+                          long startedAt) {
+        if (startedAt != epoch) return;
+        entries.put(key(sort, category, keyword), new Entry(sort, category, keyword, result));
+    }
+
+    /**
+     *ล้างตาม event ของ Repository (เรียกจาก thread ของ writer ภายใต้ lock ของ Repository)
+     *-raised เปลี่ยน : ชุด TOP_FUNDED/MOMENTUM ที่มีโครงการนั้น ลำดับ NEWEST/CLOSING_SOON ไม่ขึ้นกับ raised
+     *                 (อัตรา MOMENTUM ทุกโครงการลดด้วย half-life เดียวกัน ลำดับจึงไม่เปลี่ยนตามเวลาเอง)
+     *-ปิดโครงการ    : ชุดที่มีโครงการนั้น
+     *-CatalogChanged: ชุดที่มีโครงการที่เปลี่ยนหรือ filter ตรงกับค่าใหม่ ถ้าไม่บอกว่าโครงการไหนก็ล้างหมด
+     */
+    void onEvent(RepoEvent ev, RepoSnapshot snap) {
+        if (ev instanceof RepoEvent.ProjectRaisedChanged e) {
+            evictIf(x -> x.dependsOnRaised() && x.idSet.contains(e.projectId));
+        } else if (ev instanceof RepoEvent.ProjectClosed e) {
+            evictIf(x -> x.idSet.contains(e.projectId));
+        } else if (ev instanceof RepoEvent.CatalogChanged e) {
+            if (e.projectIds == null) {
+                evictIf(x -> true);
+            } else if (!e.projectIds.isEmpty()) {
+                List<Project> changed = new ArrayList<>(e.projectIds.size());
+                for (String id : e.projectIds) snap.getProject(id).ifPresent(changed::add);
+                evictIf(x -> {
+                    for (String id : e.projectIds) if (x.idSet.contains(id)) return true;
+                    for (Project p : changed) if (x.matches(p)) return true;
+                    return false;
+                });
+            }
+        }
+    }
+
+    private synchronized void evictIf(Predicate<Entry> stale) {
+        epoch++;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (stale.test(it.next())) {
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), entries.size());
+    }
+}
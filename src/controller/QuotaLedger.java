@@ -0,0 +1,27 @@
+package controller;
+
+import model.RewardTier;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ *QuotaLedger
+ *นับ quota คงเหลือระหว่าง apply pledge หลายรายการใน batch เดียว (ใต้ lock ของ Repository)
+ *tier ที่ได้จาก RepoSnapshot เดียวกันเป็น instance เดียวกัน จึงใช้ identity เป็น key ได้
+ */
+final class QuotaLedger {
+    private final Map<RewardTier, int[]> remaining = new IdentityHashMap<>();
+
+    boolean hasRemaining(RewardTier tier) {
+        return tier == null || left(tier)[0] > 0;
+    }
+
+    void consume(RewardTier tier) {
+        if (tier != null) left(tier)[0]--;
+    }
+
+    private int[] left(RewardTier tier) {
+        return remaining.computeIfAbsent(tier, t -> new int[]{t.getQuota()});
+    }
+}
@@ -0,0 +1,109 @@
+package controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *RateLimiter
+ *token bucket ต่อ user + bucket รวมทั้งระบบ อยู่หน้า createPledge/submitPledge
+ *request ที่เกินถูกตัดทิ้งก่อนถึง Repository (ไม่สร้าง REJECT pledge ไม่แตะไฟล์)
+ *
+ *bucket หนึ่งตัวคือ AtomicLong เดียวเก็บ "เวลาที่ bucket จะเต็มอีกครั้ง" (แบบ GCRA)
+ *ผลเท่ากับ token bucket (rate, burst) แต่ acquire เป็น CAS ล้วนไม่ต้องล็อก
+ *bucket ที่เต็มแล้ว (ไม่ได้ใช้นานพอ) ไม่มี state ที่ต้องจำ จึงลบทิ้งได้เลย ถูกกวาดเฉลี่ยทุก SWEEP_EVERY ครั้ง
+ */
+public class RateLimiter {
+
+    //กวาด bucket ว่างเฉลี่ยทุกๆ กี่ครั้งที่เรียก tryAcquire (สุ่มแทน counter กลางที่ทุก thread ต้องแย่งกัน)
+    private static final int SWEEP_EVERY = 1 << 16;
+
+    /**token bucket: rate ต่อวินาที เก็บได้สูงสุด burst */
+    static final class Bucket {
+        private final long interval;   //ns ต่อ 1 token
+        private final long tolerance;  //ns ที่ยอมให้ล้ำหน้า = interval * (burst - 1)
+        private final AtomicLong fullAt; //ns ที่ bucket จะกลับมาเต็ม
+
+        Bucket(double ratePerSec, int burst, long now) {
+            this.interval = (long) (1_000_000_000L / ratePerSec);
+            this.tolerance = interval * (burst - 1L);
+            this.fullAt = new AtomicLong(now);
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long cur = fullAt.get();
+                long next = Math.max(cur, now) + interval;
+                if (next - now > tolerance + interval) return false;
+                if (fullAt.compareAndSet(cur, next)) return true;
+            }
+        }
+
+        boolean isFull(long now) { return fullAt.get() <= now; }
+    }
+
+    private final double userRate;
+    private final int userBurst;
+    private final Bucket global;
+    private final Map<String, Bucket> users = new ConcurrentHashMap<>();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder shedUser = new LongAdder();
+    private final LongAdder shedGlobal = new LongAdder();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final LongAdder evicted = new LongAdder();
+
+    public RateLimiter(double userRatePerSec, int userBurst, double globalRatePerSec, int globalBurst) {
+        this.userRate = userRatePerSec;
+        this.userBurst = userBurst;
+        this.global = new Bucket(globalRatePerSec, globalBurst, System.nanoTime());
+    }
+
+    /**true = ผ่าน, false = ต้องตัดทิ้ง (userId null = ผู้ใช้ที่ยังไม่ login ใช้ bucket เดียวกัน) */
+    public boolean tryAcquire(String userId) {
+        long now = System.nanoTime();
+        if (ThreadLocalRandom.current().nextInt(SWEEP_EVERY) == 0) sweep(now);
+
+        //ตรวจของ user ก่อน: client ที่ flood หมด bucket ตัวเองโดยไม่กิน quota รวมของคนอื่น
+        Bucket b = users.computeIfAbsent(userId == null ? "-" : userId, k -> new Bucket(userRate, userBurst, now));
+        if (!b.tryAcquire(now)) {
+            shedUser.increment();
+            return false;
+        }
+        if (!global.tryAcquire(now)) {
+            shedGlobal.increment();
+            return false;
+        }
+        allowed.increment();
+        return true;
+    }
+
+    //ลบ bucket ที่เต็มแล้ว (เท่ากับสร้างใหม่) ทำทีละ thread
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            int before = users.size();
+            users.values().removeIf(b -> b.isFull(now));
+            evicted.add(before - users.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    //---------- metrics ----------
+
+    public long allowedCount() { return allowed.sum(); }
+    public long shedByUserCount() { return shedUser.sum(); }
+    public long shedByGlobalCount() { return shedGlobal.sum(); }
+    public long evictedCount() { return evicted.sum(); }
+    public int activeBuckets() { return users.size(); }
+
+    @Override
+    public String toString() {
+        return String.format("allowed=%d shedUser=%d shedGlobal=%d buckets=%d evicted=%d",
+                allowedCount(), shedByUserCount(), shedByGlobalCount(), activeBuckets(), evictedCount());
+    }
+}
@@ -0,0 +1,91 @@
+package controller;
+
+import model.PledgeRules;
+import model.Repository;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ *ResourceWatcher
+ *เฝ้าโฟลเดอร์ resources ด้วย WatchService เมื่อมีคนแก้ projects.csv / reward_tiers.csv / pledge_rules.csv เองระหว่างรัน
+ *ก็ให้ Repository reload เฉพาะไฟล์นั้น (merge เฉพาะแถวที่เปลี่ยน ไม่ต้อง restart/loadAll)
+ *
+ *editor มักเขียนไฟล์หลายจังหวะ (truncate แล้ว write หรือเขียนไฟล์ชั่วคราวแล้ว rename)
+ *จึงรอจนไม่มี event ใหม่ QUIET_MILLIS ก่อนอ่าน projects ก่อน tiers (tier ใหม่อาจอ้างโครงการใหม่)
+ *ไฟล์ที่ Repository เขียนเองก็เกิด event แต่ Repository ข้ามได้จาก mtime+size โดยไม่ต้องอ่าน
+ */
+public class ResourceWatcher implements AutoCloseable {
+
+    private static final long QUIET_MILLIS = 200;
+
+    private final Repository repo;
+    private final WatchService watch;
+    private final Thread worker;
+
+    public ResourceWatcher(Repository repo) throws IOException {
+        this.repo = repo;
+        this.watch = FileSystems.getDefault().newWatchService();
+        repo.dataDir().register(watch, ENTRY_CREATE, ENTRY_MODIFY);
+        this.worker = new Thread(this::run, "resource-watcher");
+        worker.setDaemon(true);
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                drain(watch.take(), changed);
+                WatchKey more;
+                while ((more = watch.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) drain(more, changed);
+
+                if (changed.contains(Repository.PROJECTS_CSV)) reload(Repository.PROJECTS_CSV);
+                if (changed.contains(Repository.REWARD_TIERS_CSV)) reload(Repository.REWARD_TIERS_CSV);
+                if (changed.contains(PledgeRules.FILE)) reload(PledgeRules.FILE);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //close()
+        }
+    }
+
+    private void drain(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> e : key.pollEvents()) {
+            if (e.context() instanceof Path p) changed.add(p.getFileName().toString());
+        }
+        key.reset();
+    }
+
+    private void reload(String file) {
+        try {
+            int n = switch (file) {
+                case Repository.PROJECTS_CSV -> repo.reloadProjects();
+                case Repository.REWARD_TIERS_CSV -> repo.reloadRewardTiers();
+                default -> repo.reloadPledgeRules();
+            };
+            if (n > 0) System.out.println("[RELOAD] " + file + " changed rows=" + n);
+        } catch (IOException | RuntimeException e) {
+            //ไฟล์ยังเขียนไม่เสร็จหรือพิมพ์ผิด: ไม่ apply อะไร รอแก้ครั้งถัดไป
+            System.out.println("[RELOAD] " + file + " skipped: " + e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try { watch.close(); } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,427 @@
+package controller;
+
+import model.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Stream;
+
+/**
+ *StressHarness
+ *ตรวจความถูกต้องเมื่อหลาย thread เรียก createPledge / upsert / query พร้อมกัน
+ *(โปรเจกต์ไม่มี unit test จึงเป็นตัวรันแยก: java -cp out Main stress --seed 1 --ops 4000 --threads 4)
+ *
+ *-ชุดข้อมูลและลำดับ op ของแต่ละ thread สุ่มจาก seed ล่วงหน้า seed เดิม = งานชุดเดิม
+ *-รันบนโฟลเดอร์ชั่วคราว ไม่แตะ resources จริง (quota น้อยๆ ให้แย่งกันบ่อย)
+ *-threads=1: เทียบผลทุก op กับ reference model ตามลำดับ (deterministic ทั้งหมด)
+ * threads>1: ลำดับ interleave ขึ้นกับ scheduler จึงเอาลำดับที่ Repository commit จริง (ลำดับใน EAGER map)
+ * ไปเล่นซ้ำบน model ทีละรายการ ทุก SUCCESS ต้องผ่านกติกาของ model ณ จุดนั้น (linearizable)
+ *
+ *invariant ท้ายรัน: quota >= 0, ขายได้ <= capacity, quota = capacity - ขายได้, raised = ผลรวม SUCCESS,
+ *pledgeId ไม่ซ้ำ, ยอดนับ SUCCESS/REJECT ตรงกับผลที่ได้ และโหลด Repository ใหม่จากไฟล์แล้วต้องได้ค่าเดิม
+ *ปิดท้ายด้วยชุดเล็กแยก: maxPerUser กับหลายรายการของ user เดียวใน ingest/submit batch
+ */
+public final class StressHarness {
+
+    private static final int PROJECTS = 6;
+    private static final int TIERS_PER_PROJECT = 2;
+    private static final LocalDate DEADLINE = LocalDate.now().plusYears(5);
+
+    /**ผลการรัน violations ว่าง = ผ่าน */
+    public static final class Report {
+        public final long seed;
+        public final int ops, threads;
+        public final long successes, rejects, elapsedMillis;
+        public final List<String> violations;
+
+        Report(long seed, int ops, int threads, long successes, long rejects, long elapsedMillis,
+               List<String> violations) {
+            this.seed = seed;
+            this.ops = ops;
+            this.threads = threads;
+            this.successes = successes;
+            this.rejects = rejects;
+            this.elapsedMillis = elapsedMillis;
+            this.violations = violations;
+        }
+
+        public boolean isClean() { return violations.isEmpty(); }
+
+        @Override
+        public String toString() {
+            return "seed=" + seed + " ops=" + ops + " threads=" + threads + " success=" + successes
+                    + " reject=" + rejects + " violations=" + violations.size() + " in " + elapsedMillis + "ms";
+        }
+    }
+
+    private enum Kind { PLEDGE, NEW_PROJECT, NEW_TIER, QUERY }
+
+    //op ที่สุ่มไว้ล่วงหน้า (ไม่ขึ้นกับผลของ op ก่อนหน้า)
+    private static final class Op {
+        final Kind kind;
+        final String projectId, tierName;
+        final long amount; //สตางค์ (NEW_TIER = minAmount)
+        final int quota;
+        boolean ok;        //ผล PLEDGE
+        String pledgeId;
+
+        Op(Kind kind, String projectId, String tierName, long amount, int quota) {
+            this.kind = kind;
+            this.projectId = projectId;
+            this.tierName = tierName;
+            this.amount = amount;
+            this.quota = quota;
+        }
+    }
+
+    //reference model แบบทำทีละรายการ
+    private static final class Model {
+        final Map<String, Long> raised = new HashMap<>();
+        final Map<String, long[]> tiers = new HashMap<>(); //key -> {minAmount, capacity, quota}
+
+        void project(String id) { raised.putIfAbsent(id, 0L); }
+
+        void tier(String projectId, String name, long min, int capacity) {
+            tiers.put(key(projectId, name), new long[]{min, capacity, capacity});
+        }
+
+        //ถ้า model รับ pledge นี้ก็ตัดยอดเลย คืน true
+        boolean apply(String projectId, String tierName, long amount) {
+            if (!raised.containsKey(projectId) || amount <= 0) return false;
+            if (tierName != null) {
+                long[] t = tiers.get(key(projectId, tierName));
+                if (t == null || amount < t[0] || t[2] <= 0) return false;
+                t[2]--;
+            }
+            raised.merge(projectId, amount, Long::sum);
+            return true;
+        }
+
+        static String key(String projectId, String tierName) { return projectId + "/" + tierName; }
+    }
+
+    private final long seed;
+    private final int ops, threads;
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+    public StressHarness(long seed, int ops, int threads) {
+        this.seed = seed;
+        this.ops = Math.max(1, ops);
+        this.threads = Math.max(1, threads);
+    }
+
+    public Report run() throws IOException {
+        Path dir = Files.createTempDirectory("crowdfund-stress-");
+        long t0 = System.nanoTime();
+        Random rnd = new Random(seed);
+        Model model = new Model();
+
+        //---- fixture ----
+        Repository repo = new Repository(dir, Repository.PledgeLoadMode.EAGER, 0);
+        List<String> fixture = new ArrayList<>();
+        repo.inBatch(() -> {
+            for (int p = 0; p < PROJECTS; p++) {
+                String id = String.valueOf(20_000_001 + p);
+                fixture.add(id);
+                repo.upsertProject(new Project(id, "Stress " + p, Money.ofBaht(100_000), DEADLINE, "CAT" + (p % 3)));
+                model.project(id);
+                for (int k = 0; k < TIERS_PER_PROJECT; k++) {
+                    long min = Money.ofBaht(100 + rnd.nextInt(900));
+                    int quota = 1 + rnd.nextInt(8);
+                    repo.upsertRewardTier(new RewardTier(id, "T" + k, min, quota));
+                    model.tier(id, "T" + k, min, quota);
+                }
+            }
+            for (int u = 0; u < threads; u++) {
+                repo.upsertUser(new User("S" + u, "stress" + u, "Stress " + u, "x"));
+            }
+        });
+
+        //---- ลำดับ op ต่อ thread (มาจาก seed เท่านั้น) ----
+        List<List<Op>> plans = new ArrayList<>();
+        int perThread = (ops + threads - 1) / threads;
+        for (int t = 0; t < threads; t++) {
+            plans.add(plan(new Random(seed * 31 + t), t, perThread, fixture, model));
+        }
+
+        //---- รันพร้อมกัน ----
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            AppController c = new AppController(repo, new Validation());
+            c.setRateLimiter(new RateLimiter(1e9, Integer.MAX_VALUE, 1e9, Integer.MAX_VALUE));
+            c.login("stress" + t, "x");
+            List<Op> plan = plans.get(t);
+            Thread w = new Thread(() -> work(c, repo, plan, start), "stress-" + t);
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) {
+            try { w.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+
+        //---- ตรวจ ----
+        long successes = 0, rejects = 0;
+        for (List<Op> plan : plans) {
+            for (Op op : plan) {
+                if (op.kind != Kind.PLEDGE) continue;
+                if (op.ok) successes++; else rejects++;
+            }
+        }
+        if (threads == 1) checkSequential(plans.get(0), model);
+        else checkCommitOrder(repo, plans, model);
+        checkFinal(repo, plans, model, successes, rejects);
+        checkReload(dir, repo);
+        checkBatchLimits();
+
+        long elapsed = (System.nanoTime() - t0) / 1_000_000;
+        if (violations.isEmpty()) deleteTree(dir);
+        else violations.add("data kept in " + dir);
+        return new Report(seed, ops, threads, successes, rejects, elapsed, new ArrayList<>(violations));
+    }
+
+    //PLEDGE 70% (มีทั้งยอดต่ำกว่า min, 0, project/tier ที่ไม่มี) / โครงการใหม่ 5% / tier ใหม่ 5% / query 20%
+    private static List<Op> plan(Random r, int t, int n, List<String> fixture, Model model) {
+        List<String> mine = new ArrayList<>(fixture);
+        List<Op> out = new ArrayList<>(n);
+        int created = 0;
+        for (int i = 0; i < n; i++) {
+            int dice = r.nextInt(100);
+            if (dice < 70) {
+                String pid = (r.nextInt(20) == 0) ? "99999999" : mine.get(r.nextInt(mine.size()));
+                String tier = (r.nextInt(10) < 6) ? "T" + r.nextInt(TIERS_PER_PROJECT + 1) : null;
+                long amount = (r.nextInt(25) == 0) ? 0 : Money.ofBaht(r.nextInt(1500));
+                out.add(new Op(Kind.PLEDGE, pid, tier, amount, 0));
+            } else if (dice < 75) {
+                String pid = String.valueOf(30_000_000 + t * 10_000 + created++);
+                mine.add(pid);
+                model.project(pid);
+                out.add(new Op(Kind.NEW_PROJECT, pid, null, 0, 0));
+            } else if (dice < 80) {
+                String pid = mine.get(r.nextInt(mine.size()));
+                String name = "N" + t + "-" + i;
+                long min = Money.ofBaht(50 + r.nextInt(500));
+                int quota = 1 + r.nextInt(4);
+                model.tier(pid, name, min, quota);
+                out.add(new Op(Kind.NEW_TIER, pid, name, min, quota));
+                //ให้มี pledge ยิงเข้า tier ใหม่นี้ด้วย
+                out.add(new Op(Kind.PLEDGE, pid, name, min + Money.ofBaht(r.nextInt(100)), 0));
+                i++;
+            } else {
+                out.add(new Op(Kind.QUERY, null, null, 0, 0));
+            }
+        }
+        return out;
+    }
+
+    private void work(AppController c, Repository repo, List<Op> plan, CyclicBarrier start) {
+        try {
+            start.await();
+        } catch (Exception e) {
+            violations.add("barrier: " + e);
+            return;
+        }
+        long lastVersion = -1;
+        for (Op op : plan) {
+            try {
+                switch (op.kind) {
+                    case PLEDGE -> {
+                        AppController.PledgeResult res = c.createPledge(op.projectId, op.amount, op.tierName);
+                        op.ok = res.ok;
+                        op.pledgeId = res.pledgeId;
+                    }
+                    case NEW_PROJECT -> repo.upsertProject(new Project(op.projectId, "New " + op.projectId,
+                            Money.ofBaht(10_000), DEADLINE, "CAT" + (op.projectId.hashCode() & 3)));
+                    case NEW_TIER -> repo.upsertRewardTier(new RewardTier(op.projectId, op.tierName, op.amount, op.quota));
+                    case QUERY -> lastVersion = query(c, lastVersion);
+                }
+            } catch (RuntimeException e) {
+                violations.add(Thread.currentThread().getName() + " " + op.kind + " threw " + e);
+            }
+        }
+    }
+
+    //snapshot ต้องสอดคล้องในตัวเอง และ version ไม่ถอยหลังใน thread เดียวกัน
+    private long query(AppController c, long lastVersion) {
+        RepoSnapshot s = c.statsSnapshot();
+        if (s.getVersion() < lastVersion) {
+            violations.add("snapshot version went back " + lastVersion + " -> " + s.getVersion());
+        }
+        long sum = 0;
+        for (Project p : s.getProjects()) sum += p.getRaisedSatang();
+        if (sum != s.getTotalRaisedSatang()) {
+            violations.add("snapshot v" + s.getVersion() + " totalRaised " + s.getTotalRaisedSatang() + " != sum " + sum);
+        }
+        for (Project p : s.getProjects()) {
+            for (RewardTier t : s.getRewardTiers(p.getId())) {
+                if (t.getQuota() < 0) violations.add("snapshot quota < 0 at " + t.getProjectId() + "/" + t.getTierName());
+            }
+        }
+        for (CategoryFacets.Facet f : c.categoryFacets()) {
+            if (f.active > f.projects || f.raised < 0) violations.add("facet out of range " + f);
+        }
+        for (Project p : c.listProjects(AppController.SortMode.TOP_FUNDED, null, null)) {
+            if (p.isClosed()) violations.add("closed project listed " + p.getId());
+        }
+        return s.getVersion();
+    }
+
+    //thread เดียว: ผลทุก op ต้องตรงกับ model ที่เดินตามลำดับเดียวกัน
+    private void checkSequential(List<Op> plan, Model model) {
+        for (Op op : plan) {
+            if (op.kind != Kind.PLEDGE) continue;
+            boolean expect = model.apply(op.projectId, op.tierName, op.amount);
+            if (expect != op.ok) {
+                violations.add("pledge " + op.projectId + "/" + op.tierName + " " + Money.format(op.amount)
+                        + " expected ok=" + expect + " got ok=" + op.ok);
+            }
+        }
+    }
+
+    //หลาย thread: เล่น SUCCESS ตามลำดับ commit บน model ทุกตัวต้องผ่าน
+    //REJECT ของ op ที่ถูกต้องทุกอย่างต้องเป็นเพราะ quota หมด (ท้ายรัน quota ของ tier นั้นต้องเป็น 0)
+    private void checkCommitOrder(Repository repo, List<List<Op>> plans, Model model) {
+        for (Pledge p : repo.listPledges()) {
+            if (p.getStatus() != PledgeStatus.SUCCESS) continue;
+            if (!model.apply(p.getProjectId(), p.getTierName(), p.getAmountSatang())) {
+                violations.add("not linearizable: " + p.getPledgeId() + " " + p.getProjectId() + "/"
+                        + p.getTierName() + " " + Money.format(p.getAmountSatang()) + " accepted after quota/limits ran out");
+            }
+        }
+        for (List<Op> plan : plans) {
+            for (Op op : plan) {
+                if (op.kind != Kind.PLEDGE || op.ok) continue;
+                if (!model.raised.containsKey(op.projectId) || op.amount <= 0) continue;
+                if (op.tierName == null) {
+                    violations.add("valid pledge without tier rejected: " + op.projectId + " " + Money.format(op.amount));
+                    continue;
+                }
+                long[] t = model.tiers.get(Model.key(op.projectId, op.tierName));
+                if (t != null && op.amount >= t[0] && t[2] > 0) {
+                    violations.add("pledge rejected while quota left: " + op.projectId + "/" + op.tierName);
+                }
+            }
+        }
+    }
+
+    private void checkFinal(Repository repo, List<List<Op>> plans, Model model, long successes, long rejects) {
+        Set<String> ids = new HashSet<>();
+        for (List<Op> plan : plans) {
+            for (Op op : plan) {
+                if (op.kind == Kind.PLEDGE && op.ok && !ids.add(op.pledgeId)) {
+                    violations.add("duplicate pledgeId " + op.pledgeId);
+                }
+            }
+        }
+        RepoSnapshot s = repo.snapshot();
+        if (s.countByStatus(PledgeStatus.SUCCESS) != successes) {
+            violations.add("SUCCESS count " + s.countByStatus(PledgeStatus.SUCCESS) + " != results " + successes);
+        }
+        if (s.countByStatus(PledgeStatus.REJECT) != rejects) {
+            violations.add("REJECT count " + s.countByStatus(PledgeStatus.REJECT) + " != results " + rejects);
+        }
+
+        Map<String, Long> sumByProject = new HashMap<>();
+        Map<String, Integer> soldByTier = new HashMap<>();
+        for (Pledge p : repo.listPledges()) {
+            if (p.getStatus() != PledgeStatus.SUCCESS) continue;
+            sumByProject.merge(p.getProjectId(), p.getAmountSatang(), Long::sum);
+            if (p.getTierName() != null) soldByTier.merge(Model.key(p.getProjectId(), p.getTierName()), 1, Integer::sum);
+        }
+        for (Project p : s.getProjects()) {
+            long sum = sumByProject.getOrDefault(p.getId(), 0L);
+            if (p.getRaisedSatang() != sum) {
+                violations.add("raised " + p.getId() + " " + Money.format(p.getRaisedSatang()) + " != SUCCESS sum " + Money.format(sum));
+            }
+            if (model.raised.containsKey(p.getId()) && model.raised.get(p.getId()) != sum) {
+                violations.add("raised " + p.getId() + " differs from model");
+            }
+            for (RewardTier t : s.getRewardTiers(p.getId())) {
+                int sold = soldByTier.getOrDefault(Model.key(p.getId(), t.getTierName()), 0);
+                String where = p.getId() + "/" + t.getTierName();
+                if (t.getQuota() < 0) violations.add("quota < 0 at " + where);
+                if (sold > t.getCapacity()) violations.add("oversold " + where + " sold=" + sold + " capacity=" + t.getCapacity());
+                if (t.getQuota() != t.getCapacity() - sold) {
+                    violations.add("quota " + where + " = " + t.getQuota() + " but capacity - sold = " + (t.getCapacity() - sold));
+                }
+            }
+        }
+    }
+
+    //ค่าที่เขียนลงไฟล์ต้องโหลดกลับมาได้เท่าเดิม
+    private void checkReload(Path dir, Repository live) {
+        Repository again = new Repository(dir, Repository.PledgeLoadMode.EAGER, 0);
+        RepoSnapshot a = live.snapshot(), b = again.snapshot();
+        for (PledgeStatus st : PledgeStatus.values()) {
+            if (a.countByStatus(st) != b.countByStatus(st)) {
+                violations.add("reload " + st + " count " + b.countByStatus(st) + " != " + a.countByStatus(st));
+            }
+        }
+        for (Project p : a.getProjects()) {
+            Optional<Project> q = b.getProject(p.getId());
+            if (q.isEmpty() || q.get().getRaisedSatang() != p.getRaisedSatang()) {
+                violations.add("reload raised differs for " + p.getId());
+                continue;
+            }
+            for (RewardTier t : a.getRewardTiers(p.getId())) {
+                var u = b.getRewardTiers(p.getId()).stream()
+                        .filter(x -> x.getTierName().equals(t.getTierName())).findFirst();
+                if (u.isEmpty() || u.get().getQuota() != t.getQuota()) {
+                    violations.add("reload quota differs for " + p.getId() + "/" + t.getTierName());
+                }
+            }
+        }
+    }
+
+    //maxPerUser ต้องนับรายการก่อนหน้าใน batch เดียวกัน: ingest/submit ต้องได้ผลเท่ากับ createPledge ทีละรายการ
+    private void checkBatchLimits() throws IOException {
+        Path dir = Files.createTempDirectory("crowdfund-limits-");
+        String pid = "20000001";
+        Files.write(dir.resolve(PledgeRules.FILE), List.of("projectId,maxAmount,maxPerUser", pid + ",,100"));
+        Repository repo = new Repository(dir, Repository.PledgeLoadMode.EAGER, 0);
+        repo.upsertProject(new Project(pid, "Limit", Money.ofBaht(100_000), DEADLINE, "CAT0"));
+        for (int u = 1; u <= 3; u++) repo.upsertUser(new User("L" + u, "limit" + u, "Limit " + u, "x"));
+        AppController c = new AppController(repo, new Validation());
+        c.setRateLimiter(new RateLimiter(1e9, Integer.MAX_VALUE, 1e9, Integer.MAX_VALUE));
+        int expect = 2; //4 x 50 THB เพดาน 100 THB
+
+        List<String> rows = new ArrayList<>(List.of("userId,projectId,amount,tierName"));
+        for (int i = 0; i < 4; i++) rows.add("L1," + pid + ",50,");
+        Path in = dir.resolve("limit_ingest.csv");
+        Files.write(in, rows);
+        long ingested = new PledgeIngestor(repo, c).ingest(in).success;
+
+        c.login("limit2", "x");
+        List<CompletableFuture<AppController.PledgeResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) futures.add(c.submitPledge(pid, Money.ofBaht(50), null));
+        long submitted = futures.stream().filter(f -> f.join().ok).count();
+
+        c.login("limit3", "x");
+        long direct = 0;
+        for (int i = 0; i < 4; i++) if (c.createPledge(pid, Money.ofBaht(50), null).ok) direct++;
+        c.shutdown();
+
+        int before = violations.size();
+        if (ingested != expect) violations.add("maxPerUser: ingest accepted " + ingested + " of 4, expected " + expect);
+        if (submitted != expect) violations.add("maxPerUser: submit accepted " + submitted + " of 4, expected " + expect);
+        if (direct != expect) violations.add("maxPerUser: createPledge accepted " + direct + " of 4, expected " + expect);
+        if (violations.size() == before) deleteTree(dir);
+        else violations.add("limit data kept in " + dir);
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try { Files.delete(p); } catch (IOException e) { throw new UncheckedIOException(e); }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+        }
+    }
+}
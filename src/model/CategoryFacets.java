@@ -0,0 +1,136 @@
+package model;
+
+import java.util.*;
+
+/**
+ *CategoryFacets
+ *ยอดรวมต่อหมวดหมู่ (Project.category) สำหรับ dropdown/การกรองในหน้า browse
+ *จำนวนโครงการ, ที่ยังเปิด, goal รวม, raised รวม และ index ของโครงการที่ยังเปิดในหมวด
+ *
+ *เป็นส่วนหนึ่งของ RepoSnapshot (immutable อ่านได้ไม่ต้องล็อก)
+ *-สร้างใหม่ทั้งชุดพร้อม snapshot ทั้งชุด (upsert/ปิดโครงการ/reload/reconcile)
+ *-pledge เปลี่ยนแค่ raised ของหมวดเดียว: withRaised copy เฉพาะ array ของ raised (O(จำนวนหมวด))
+ */
+public final class CategoryFacets {
+
+    /**ค่า ณ ตอนที่ขอ (แก้ไม่ได้) */
+    public static final class Facet {
+        public final String category;
+        public final int projects;
+        public final int active;
+        public final long goal;   //สตางค์
+        public final long raised; //สตางค์
+
+        Facet(String category, int projects, int active, long goal, long raised) {
+            this.category = category;
+            this.projects = projects;
+            this.active = active;
+            this.goal = goal;
+            this.raised = raised;
+        }
+
+        @Override
+        public String toString() {
+            return category + " (" + active + "/" + projects + " open, "
+                    + Money.format(raised) + "/" + Money.format(goal) + " THB)";
+        }
+    }
+
+    private final String[] names;     //เรียงชื่อไว้ให้ dropdown
+    private final String[] lowerNames;
+    private final int[] projects, active;
+    private final long[] goal, raised;
+    private final int[][] activeIdx;  //index ใน snapshot ของโครงการที่ยังเปิดในหมวด (เรียงจากน้อยไปมาก)
+
+    private CategoryFacets(String[] names, int[] projects, int[] active, long[] goal, long[] raised,
+                           int[][] activeIdx) {
+        this.names = names;
+        this.lowerNames = new String[names.length];
+        for (int i = 0; i < names.length; i++) lowerNames[i] = names[i].toLowerCase();
+        this.projects = projects;
+        this.active = active;
+        this.goal = goal;
+        this.raised = raised;
+        this.activeIdx = activeIdx;
+    }
+
+    private CategoryFacets(CategoryFacets base, long[] raised) {
+        this.names = base.names;
+        this.lowerNames = base.lowerNames;
+        this.projects = base.projects;
+        this.active = base.active;
+        this.goal = base.goal;
+        this.raised = raised;
+        this.activeIdx = base.activeIdx;
+    }
+
+    /**นับจาก projects ของ snapshot (index ตรงกับ array ที่ให้มา) */
+    static CategoryFacets build(Project[] all) {
+        TreeMap<String, List<Integer>> byName = new TreeMap<>();
+        for (int i = 0; i < all.length; i++) byName.computeIfAbsent(key(all[i]), k -> new ArrayList<>()).add(i);
+
+        int n = byName.size(), c = 0;
+        String[] names = new String[n];
+        int[] projects = new int[n], active = new int[n];
+        long[] goal = new long[n], raised = new long[n];
+        int[][] activeIdx = new int[n][];
+        for (var e : byName.entrySet()) {
+            names[c] = e.getKey();
+            int[] open = new int[e.getValue().size()];
+            int nOpen = 0;
+            for (int i : e.getValue()) {
+                Project p = all[i];
+                projects[c]++;
+                goal[c] += p.getGoalSatang();
+                raised[c] += p.getRaisedSatang();
+                if (!p.isClosed()) open[nOpen++] = i;
+            }
+            active[c] = nOpen;
+            activeIdx[c] = Arrays.copyOf(open, nOpen);
+            c++;
+        }
+        return new CategoryFacets(names, projects, active, goal, raised, activeIdx);
+    }
+
+    /**ชุดใหม่ที่ raised ของหมวดนี้เปลี่ยนไป delta (ส่วนอื่นใช้ร่วมกับชุดเดิม) */
+    CategoryFacets withRaised(String category, long delta) {
+        int c = Arrays.binarySearch(names, category == null ? "" : category);
+        if (c < 0 || delta == 0) return this;
+        long[] r = raised.clone();
+        r[c] += delta;
+        return new CategoryFacets(this, r);
+    }
+
+    List<Facet> facets() {
+        List<Facet> out = new ArrayList<>(names.length);
+        for (int c = 0; c < names.length; c++) {
+            out.add(new Facet(names[c], projects[c], active[c], goal[c], raised[c]));
+        }
+        return out;
+    }
+
+    /**
+     *index ของโครงการที่ยังเปิดในหมวดที่ชื่อมี text อยู่ (ไม่สนตัวพิมพ์ เหมือนตัวกรองเดิม เช่น "ec" ตรงกับ "Tech")
+     *เรียงตามลำดับใน snapshot ไล่แค่ชื่อหมวด ไม่ไล่ทุกโครงการ
+     */
+    int[] activeIndices(String text) {
+        String t = text.toLowerCase();
+        int[] out = null;
+        for (int c = 0; c < names.length; c++) {
+            if (!lowerNames[c].contains(t)) continue;
+            if (out == null) {
+                out = activeIdx[c];
+            } else {
+                int[] merged = Arrays.copyOf(out, out.length + activeIdx[c].length);
+                System.arraycopy(activeIdx[c], 0, merged, out.length, activeIdx[c].length);
+                Arrays.sort(merged);
+                out = merged;
+            }
+        }
+        return out == null ? new int[0] : out;
+    }
+
+    private static String key(Project p) {
+        return (p.getCategory() == null) ? "" : p.getCategory();
+    }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import java.util.*;
+
+/**
+ *DeadlineWheel
+ *timer wheel 2 ชั้น หน่วยเป็นวัน (epochDay) สำหรับหาโครงการที่ถึง deadline
+ *
+ *ชั้น 0: 64 ช่อง ช่องละ 1 วัน ในบล็อก 64 วันปัจจุบัน
+ *ชั้น 1: 64 ช่อง ช่องละ 64 วัน (ไกลได้ราว 11 ปี)
+ *ไกลกว่านั้นอยู่ใน overflow (TreeMap) แล้วค่อยเลื่อนเข้าชั้น 1 เมื่อใกล้ถึง
+ *
+ *advance ทีละวัน: ขึ้นบล็อกใหม่ก็ย้ายช่องของชั้น 1 ลงชั้น 0 (cascade) แล้วเก็บช่องของวันนั้น
+ *schedule/advance เป็น O(1) ต่อรายการ ไม่ต้องไล่ทุกโครงการทุกวัน
+ *ไม่มี cancel: รายการเก่าที่ deadline ถูกแก้ทีหลังให้ผู้เรียกตรวจซ้ำตอนได้คืน
+ *ไม่ thread-safe เรียกภายใต้ lock ของ Repository
+ */
+final class DeadlineWheel {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private static final class Entry {
+        final String id;
+        final long day;
+
+        Entry(String id, long day) { this.id = id; this.day = day; }
+    }
+
+    private final List<List<Entry>> level0 = slots();
+    private final List<List<Entry>> level1 = slots();
+    private final TreeMap<Long, List<Entry>> overflow = new TreeMap<>(); //บล็อก (day >> BITS) -> รายการ
+    private long current; //วันที่ advance มาถึงแล้ว (day <= current คือหมดอายุแล้ว)
+    private int size;
+
+    DeadlineWheel(long today) {
+        this.current = today;
+    }
+
+    private static List<List<Entry>> slots() {
+        List<List<Entry>> l = new ArrayList<>(SLOTS);
+        for (int i = 0; i < SLOTS; i++) l.add(new ArrayList<>());
+        return l;
+    }
+
+    long currentDay() { return current; }
+    int size() { return size; }
+
+    /**ตั้งให้ id หมดอายุเมื่อถึงวัน day คืน false ถ้าหมดอายุไปแล้ว (ไม่ได้ลงตาราง) */
+    boolean schedule(String id, long day) {
+        if (day <= current) return false;
+        place(new Entry(id, day));
+        size++;
+        return true;
+    }
+
+    private void place(Entry e) {
+        long block = e.day >>> BITS, now = current >>> BITS;
+        if (block == now) {
+            level0.get((int) (e.day & MASK)).add(e);
+        } else if (block - now < SLOTS) {
+            level1.get((int) (block & MASK)).add(e);
+        } else {
+            overflow.computeIfAbsent(block, k -> new ArrayList<>()).add(e);
+        }
+    }
+
+    /**เลื่อนถึงวัน today คืน id ที่หมดอายุระหว่างทาง (ตามลำดับวัน) */
+    List<String> advance(long today) {
+        List<String> due = new ArrayList<>();
+        while (current < today) {
+            current++;
+            if ((current & MASK) == 0) cascade();
+            List<Entry> slot = level0.get((int) (current & MASK));
+            for (Entry e : slot) due.add(e.id);
+            size -= slot.size();
+            slot.clear();
+        }
+        return due;
+    }
+
+    //ขึ้นบล็อกใหม่: ช่องชั้น 1 ของบล็อกนี้ลงชั้น 0 และดึงบล็อกจาก overflow ที่เข้าระยะชั้น 1 แล้ว
+    private void cascade() {
+        long now = current >>> BITS;
+        List<Entry> slot = level1.get((int) (now & MASK));
+        List<Entry> moving = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry e : moving) place(e);
+
+        var near = overflow.headMap(now + SLOTS, false);
+        for (List<Entry> l : near.values()) {
+            for (Entry e : l) place(e);
+        }
+        near.clear();
+    }
+}
@@ -0,0 +1,250 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *FundingRollup
+ *ยอด pledge SUCCESS (จำนวน + สตางค์) ตามช่วงเวลา รวมทั้งระบบและแยกต่อ project
+ *
+ *แต่ละ series มี ring buffer ขนาดคงที่ 3 ชุด (long[] ล้วน ไม่สร้าง object ต่อ pledge)
+ *MINUTE : 60 ช่อง = ชั่วโมงล่าสุด
+ *HOUR   : 24 ช่อง = วันล่าสุด
+ *DAY    : 30 ช่อง = เดือนล่าสุด
+ *ช่องเก็บเลข bucket (epoch นาที/ชั่วโมง/วัน) ไว้ด้วย ถ้าไม่ตรงคือค่าเก่าที่วนทับได้เลย
+ *เวลานับจาก LocalDateTime ตรงๆ (createdAt ไม่มี zone) bucket วันจึงตัดตอนเที่ยงคืนเวลาท้องถิ่น
+ *
+ *Repository เรียก add ตอน addPledge และสร้างใหม่จาก createdAt ตอน load
+ *(LAZY ที่มี pledges.idx อ่านสถานะทั้งก้อนคืนด้วย read แล้ว add เฉพาะบรรทัดที่ต่อท้ายหลัง checkpoint)
+ *query ไล่แค่ช่องของ window ไม่แตะ pledge
+ *
+ *velocity: แต่ละ series เก็บผลรวมยอดที่ถ่วงน้ำหนัก e^(-λ·อายุ) (half-life RATE_HALF_LIFE_DAYS)
+ *pledge ใหม่คือ decay ค่าเดิมถึงเวลานั้นแล้วบวกเพิ่ม (O(1)) อัตรา/วัน = ผลรวม ณ ตอนนี้ × λ
+ *load ย้อนแค่ 30 วันก็พอ (10 half-life น้ำหนักเหลือไม่ถึง 0.1%)
+ */
+public final class FundingRollup {
+
+    public enum Granularity {
+        MINUTE(60_000L, 60),
+        HOUR(3_600_000L, 24),
+        DAY(86_400_000L, 30);
+
+        final long millis;
+        public final int slots;
+
+        Granularity(long millis, int slots) {
+            this.millis = millis;
+            this.slots = slots;
+        }
+    }
+
+    /**ผล query: index 0 = bucket เก่าสุด ... index สุดท้าย = bucket ปัจจุบัน */
+    public static final class Window {
+        public final Granularity granularity;
+        public final LocalDateTime firstBucket; //เวลาเริ่มของ bucket แรก
+        public final long[] count;
+        public final long[] amount;          //สตางค์
+
+        Window(Granularity granularity, LocalDateTime firstBucket, long[] count, long[] amount) {
+            this.granularity = granularity;
+            this.firstBucket = firstBucket;
+            this.count = count;
+            this.amount = amount;
+        }
+
+        public long totalCount() { long s = 0; for (long c : count) s += c; return s; }
+        public long totalAmount() { long s = 0; for (long a : amount) s += a; return s; }
+    }
+
+    //ring ของ granularity เดียว
+    private static final class Ring {
+        final Granularity g;
+        final long[] bucket, count, amount;
+
+        Ring(Granularity g) {
+            this.g = g;
+            this.bucket = new long[g.slots];
+            this.count = new long[g.slots];
+            this.amount = new long[g.slots];
+            Arrays.fill(bucket, Long.MIN_VALUE);
+        }
+
+        void add(long millis, long satang) {
+            long b = Math.floorDiv(millis, g.millis);
+            int i = (int) Math.floorMod(b, (long) g.slots);
+            if (bucket[i] != b) {
+                if (bucket[i] > b) return; //เก่ากว่า window ที่ถืออยู่
+                bucket[i] = b;
+                count[i] = 0;
+                amount[i] = 0;
+            }
+            count[i]++;
+            amount[i] += satang;
+        }
+
+        Window window(int n, long nowMillis) {
+            n = Math.min(n, g.slots);
+            long now = Math.floorDiv(nowMillis, g.millis);
+            long[] c = new long[n], a = new long[n];
+            for (int k = 0; k < n; k++) {
+                long b = now - (n - 1 - k);
+                int i = (int) Math.floorMod(b, (long) g.slots);
+                if (bucket[i] == b) { c[k] = count[i]; a[k] = amount[i]; }
+            }
+            return new Window(g, toLocal((now - n + 1) * g.millis), c, a);
+        }
+    }
+
+    public static final double RATE_HALF_LIFE_DAYS = 3;
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final double LAMBDA = Math.log(2) / (RATE_HALF_LIFE_DAYS * DAY_MILLIS); //ต่อ ms
+
+    private static final class Series {
+        final Ring[] rings = new Ring[Granularity.values().length];
+        double decayed;                    //สตางค์ถ่วงน้ำหนัก ณ lastMillis
+        long lastMillis = Long.MIN_VALUE;  //ยังไม่มี pledge
+
+        Series() {
+            for (Granularity g : Granularity.values()) rings[g.ordinal()] = new Ring(g);
+        }
+
+        synchronized void add(long millis, long satang) {
+            for (Ring r : rings) r.add(millis, satang);
+            if (lastMillis == Long.MIN_VALUE) {
+                decayed = satang;
+                lastMillis = millis;
+            } else if (millis >= lastMillis) {
+                decayed = decayed * Math.exp(-LAMBDA * (millis - lastMillis)) + satang;
+                lastMillis = millis;
+            } else {
+                decayed += satang * Math.exp(-LAMBDA * (lastMillis - millis)); //มาช้ากว่า (load ไม่เรียงเวลา)
+            }
+        }
+
+        synchronized double ratePerDay(long nowMillis) {
+            if (lastMillis == Long.MIN_VALUE) return 0;
+            long age = Math.max(0, nowMillis - lastMillis);
+            return decayed * Math.exp(-LAMBDA * age) * LAMBDA * DAY_MILLIS;
+        }
+
+        synchronized Window window(Granularity g, int n, long nowMillis) {
+            return rings[g.ordinal()].window(n, nowMillis);
+        }
+    }
+
+    private final Series global = new Series();
+    private final Map<String, Series> byProject = new ConcurrentHashMap<>();
+    private final Series empty = new Series();
+
+    void clear() {
+        synchronized (global) {
+            for (Granularity g : Granularity.values()) global.rings[g.ordinal()] = new Ring(g);
+            global.decayed = 0;
+            global.lastMillis = Long.MIN_VALUE;
+        }
+        byProject.clear();
+    }
+
+    //---------- สถานะทั้งก้อน (checkpoint ของ PledgeIndex) ----------
+
+    void write(DataOutput out) throws IOException {
+        writeSeries(out, global);
+        Map<String, Series> copy = Map.copyOf(byProject);
+        out.writeInt(copy.size());
+        for (var e : copy.entrySet()) {
+            out.writeUTF(e.getKey());
+            writeSeries(out, e.getValue());
+        }
+    }
+
+    void read(DataInput in, SymbolTable symbols) throws IOException {
+        clear();
+        readSeries(in, global);
+        for (int n = in.readInt(); n > 0; n--) {
+            String projectId = symbols.intern(in.readUTF());
+            Series s = new Series();
+            readSeries(in, s);
+            byProject.put(projectId, s);
+        }
+    }
+
+    private static void writeSeries(DataOutput out, Series s) throws IOException {
+        synchronized (s) {
+            out.writeDouble(s.decayed);
+            out.writeLong(s.lastMillis);
+            for (Ring r : s.rings) {
+                for (int i = 0; i < r.g.slots; i++) {
+                    out.writeLong(r.bucket[i]);
+                    out.writeLong(r.count[i]);
+                    out.writeLong(r.amount[i]);
+                }
+            }
+        }
+    }
+
+    private static void readSeries(DataInput in, Series s) throws IOException {
+        synchronized (s) {
+            s.decayed = in.readDouble();
+            s.lastMillis = in.readLong();
+            for (Ring r : s.rings) {
+                for (int i = 0; i < r.g.slots; i++) {
+                    r.bucket[i] = in.readLong();
+                    r.count[i] = in.readLong();
+                    r.amount[i] = in.readLong();
+                }
+            }
+        }
+    }
+
+    /**นับ pledge SUCCESS 1 รายการ (REJECT ไม่นับ) */
+    void add(Pledge p) {
+        if (p.getStatus() != PledgeStatus.SUCCESS) return;
+        add(p.getProjectId(), p.getCreatedAt(), p.getAmountSatang());
+    }
+
+    void add(String projectId, LocalDateTime createdAt, long satang) {
+        long millis = toMillis(createdAt);
+        global.add(millis, satang);
+        byProject.computeIfAbsent(projectId, k -> new Series()).add(millis, satang);
+    }
+
+    /**n bucket ล่าสุด (ไม่เกินจำนวนช่องของ granularity) projectId = null คือรวมทั้งระบบ */
+    public Window window(String projectId, Granularity g, int n) {
+        Series s = (projectId == null) ? global : byProject.getOrDefault(projectId, empty);
+        return s.window(g, n, toMillis(LocalDateTime.now()));
+    }
+
+    /**อัตรายอด SUCCESS ล่าสุด (สตางค์/วัน แบบ decay) projectId = null คือรวมทั้งระบบ */
+    public double ratePerDay(String projectId) {
+        return ratePerDay(projectId, toMillis(LocalDateTime.now()));
+    }
+
+    /**เหมือน ratePerDay(projectId) แต่ใช้เวลาที่ให้มา (จัดอันดับทั้งรายการด้วยเวลาเดียวกัน) */
+    public double ratePerDay(String projectId, LocalDateTime now) {
+        return ratePerDay(projectId, toMillis(now));
+    }
+
+    private double ratePerDay(String projectId, long nowMillis) {
+        Series s = (projectId == null) ? global : byProject.get(projectId);
+        return (s == null) ? 0 : s.ratePerDay(nowMillis);
+    }
+
+    private static long toMillis(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) * 1000L + t.getNano() / 1_000_000;
+    }
+
+    private static LocalDateTime toLocal(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), 0, ZoneOffset.UTC);
+    }
+
+    /**ก่อนเวลานี้ไม่มีผลกับ window ใดแล้ว (ใช้ข้ามบรรทัดเก่าตอน rebuild) */
+    static LocalDateTime horizon(LocalDateTime now) {
+        return now.minusDays(Granularity.DAY.slots);
+    }
+}
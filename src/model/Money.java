@@ -0,0 +1,99 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ *Money
+ *จำนวนเงินทั้งระบบเก็บเป็น long หน่วยสตางค์ (1 บาท = 100 สตางค์) ไม่ใช้ double
+ *บวกสะสมได้ตรงเป๊ะ ไม่มี drift และ format/parse ได้โดยไม่ผ่าน floating point
+ *
+ *parse รับทั้ง "1000", "1000.5", "1000.50" และรูปแบบเก่า "1.5E7" ที่เคยเขียนด้วย String.valueOf(double)
+ */
+public final class Money {
+
+    public static final long SATANG_PER_BAHT = 100L;
+
+    private Money() {}
+
+    /**บาทเต็ม -> สตางค์ */
+    public static long ofBaht(long baht) {
+        return Math.multiplyExact(baht, SATANG_PER_BAHT);
+    }
+
+    /**แปลงข้อความจำนวนเงิน (หน่วยบาท) เป็นสตางค์ ถ้าไม่ใช่ตัวเลขจะโยน NumberFormatException */
+    public static long parse(String s) {
+        if (s == null) throw new NumberFormatException("null amount");
+        s = s.trim();
+        int n = s.length();
+        if (n == 0) throw new NumberFormatException("empty amount");
+
+        int i = 0;
+        boolean neg = false;
+        if (s.charAt(0) == '-' || s.charAt(0) == '+') { neg = s.charAt(0) == '-'; i++; }
+
+        long whole = 0;
+        int digits = 0;
+        for (; i < n && s.charAt(i) != '.'; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return parseSlow(s); //เช่น exponent 1.5E7
+            whole = Math.addExact(Math.multiplyExact(whole, 10), d);
+            digits++;
+        }
+
+        long frac = 0;
+        int fracDigits = 0;
+        if (i < n) {
+            i++; //ข้าม '.'
+            for (; i < n; i++) {
+                int d = s.charAt(i) - '0';
+                if (d < 0 || d > 9 || fracDigits == 2) return parseSlow(s);
+                frac = frac * 10 + d;
+                fracDigits++;
+            }
+        }
+        if (digits == 0 && fracDigits == 0) throw new NumberFormatException("bad amount: " + s);
+        if (fracDigits == 1) frac *= 10;
+
+        long v = Math.addExact(Math.multiplyExact(whole, SATANG_PER_BAHT), frac);
+        return neg ? -v : v;
+    }
+
+    //ทางช้า: exponent หรือทศนิยมเกิน 2 ตำแหน่ง (ปัดครึ่งขึ้น)
+    private static long parseSlow(String s) {
+        try {
+            return new BigDecimal(s).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("amount out of range: " + s);
+        }
+    }
+
+    /**สำหรับแสดงผล: ทศนิยม 2 ตำแหน่งเสมอ เช่น 123450 -> "1234.50" */
+    public static String format(long satang) {
+        StringBuilder sb = new StringBuilder(20);
+        appendFixed(sb, satang);
+        return sb.toString();
+    }
+
+    /**สำหรับเขียนลงไฟล์: สั้นที่สุดที่ parse กลับได้ตรง เช่น 100000 -> "1000", 123450 -> "1234.5" */
+    public static String encode(long satang) {
+        StringBuilder sb = new StringBuilder(20);
+        if (satang < 0) { sb.append('-'); satang = -satang; }
+        sb.append(satang / SATANG_PER_BAHT);
+        int frac = (int) (satang % SATANG_PER_BAHT);
+        if (frac != 0) {
+            sb.append('.').append(frac / 10);
+            if (frac % 10 != 0) sb.append(frac % 10);
+        }
+        return sb.toString();
+    }
+
+    /**ต่อท้าย StringBuilder แบบทศนิยม 2 ตำแหน่ง (ไม่สร้าง String ชั่วคราว) */
+    public static void appendFixed(StringBuilder sb, long satang) {
+        if (satang < 0) { sb.append('-'); satang = -satang; }
+        sb.append(satang / SATANG_PER_BAHT).append('.');
+        int frac = (int) (satang % SATANG_PER_BAHT);
+        if (frac < 10) sb.append('0');
+        sb.append(frac);
+    }
+}
@@ -0,0 +1,218 @@
+package model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ *PledgeArchive
+ *ที่เก็บ pledge ของโครงการที่ปิดแล้ว แยกออกจาก pledges.csv
+ *
+ *resources/archive/
+ *  index.csv                : projectId,segment,count,success,reject,maxSeq (append-only)
+ *  <projectId>-<n>.csv.gz   : segment ต่อ project เขียนครั้งเดียวแล้วไม่แก้อีก (immutable)
+ *
+ *index เก็บยอดนับไว้ด้วย Repository จึงรวม count/เลข id สูงสุดได้โดยไม่ต้องเปิด segment
+ *
+ *ลำดับตอน archive: writeSegment (ยังไม่ลง index) -> Repository สลับ pledges.csv -> commit ลง index
+ *crash ระหว่างทางจะเหลือ segment ที่ไม่มีใน index load จะนับจากไฟล์แล้วรับเข้า index ให้
+ *(ถ้า pledges.csv ยังไม่ถูกสลับ แถวเดียวกันยังอยู่ในไฟล์ live Repository ข้ามแถวนั้นด้วย covers)
+ *
+ *byProject เปลี่ยนโดยสร้าง map ใหม่ทั้งก้อน (copy-on-write) export อ่านได้โดยไม่ต้องถือ lock ของ Repository
+ */
+final class PledgeArchive {
+
+    static final String INDEX_HEADER = "projectId,segment,count,success,reject,maxSeq";
+
+    /**ข้อมูล 1 segment ตามที่บันทึกใน index */
+    static final class Segment {
+        final String projectId;
+        final String file;
+        final long count;
+        final long success;
+        final long reject;
+        final int maxSeq;
+
+        Segment(String projectId, String file, long count, long success, long reject, int maxSeq) {
+            this.projectId = projectId;
+            this.file = file;
+            this.count = count;
+            this.success = success;
+            this.reject = reject;
+            this.maxSeq = maxSeq;
+        }
+    }
+
+    private final Path dir;
+    private final Path fIndex;
+    private volatile Map<String, List<Segment>> byProject = Map.of();
+
+    PledgeArchive(Path dir) {
+        this.dir = dir;
+        this.fIndex = dir.resolve("index.csv");
+    }
+
+    /**อ่าน index.csv (ไม่เปิด segment) แล้วรับ segment ที่เขียนเสร็จแต่ยังไม่ลง index (crash กลาง archive) */
+    void load(SymbolTable symbols) {
+        List<Segment> all = new ArrayList<>();
+        Set<String> indexed = new HashSet<>();
+        if (Files.exists(fIndex)) {
+            try (var br = Files.newBufferedReader(fIndex)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.isBlank() || line.startsWith("projectId")) continue;
+                    String[] parts = Repository.splitCsv(line, 6);
+                    Segment s = new Segment(symbols.intern(parts[0]), parts[1],
+                            Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]),
+                            Integer.parseInt(parts[5]));
+                    all.add(s);
+                    indexed.add(s.file);
+                }
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+        byProject = group(all);
+
+        List<Segment> orphans = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (var ds = Files.newDirectoryStream(dir, "*.csv.gz")) {
+                for (Path f : ds) {
+                    String name = f.getFileName().toString();
+                    if (indexed.contains(name)) continue;
+                    Segment s = recount(name, symbols);
+                    if (s != null) orphans.add(s); else Files.delete(f);
+                }
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+        if (orphans.isEmpty()) return;
+        try {
+            commit(orphans);
+        } catch (IOException e) {
+            e.printStackTrace();
+            all.addAll(orphans); //ลง index ไม่ได้ก็ยังนับใน mem รอบนี้ (load ครั้งหน้าจะลองใหม่)
+            byProject = group(all);
+        }
+    }
+
+    //นับยอดของ segment จากตัวไฟล์ (ใช้กับ segment ที่ไม่มีใน index) null = ไฟล์ว่าง
+    private Segment recount(String name, SymbolTable symbols) throws IOException {
+        String[] projectId = {null};
+        long[] n = new long[2]; //success, reject
+        int[] maxSeq = {0};
+        scanSegment(new Segment(null, name, 0, 0, 0, 0), line -> {
+            String[] parts = Repository.splitCsv(line, 7);
+            projectId[0] = parts[2];
+            n[PledgeStatus.valueOf(parts[5]) == PledgeStatus.SUCCESS ? 0 : 1]++;
+            maxSeq[0] = Math.max(maxSeq[0], PledgeFile.sequenceOf(parts[0]));
+        });
+        if (projectId[0] == null) return null;
+        return new Segment(symbols.intern(projectId[0]), name, n[0] + n[1], n[0], n[1], maxSeq[0]);
+    }
+
+    private static Map<String, List<Segment>> group(Collection<Segment> segs) {
+        Map<String, List<Segment>> out = new LinkedHashMap<>();
+        for (Segment s : segs) out.computeIfAbsent(s.projectId, k -> new ArrayList<>()).add(s);
+        return Collections.unmodifiableMap(out);
+    }
+
+    Path indexFile() { return fIndex; }
+
+    Collection<Segment> segments() {
+        List<Segment> all = new ArrayList<>();
+        for (List<Segment> l : byProject.values()) all.addAll(l);
+        return all;
+    }
+
+    boolean has(String projectId) { return byProject.containsKey(projectId); }
+
+    /**
+     *แถวนี้ของไฟล์ live ถูก archive ไปแล้วหรือยัง (archive ย้าย pledge ทุกแถวของโครงการในครั้งเดียว
+     *แถวที่เลข id ไม่เกิน maxSeq ของ segment ของโครงการนั้นจึงอยู่ใน segment แล้ว)
+     */
+    boolean covers(String projectId, int seq) {
+        List<Segment> segs = byProject.get(projectId);
+        if (segs == null || seq <= 0) return false;
+        for (Segment s : segs) if (seq <= s.maxSeq) return true;
+        return false;
+    }
+
+    /**
+     *เขียน segment ใหม่ของ project นี้ (ยังไม่ลง index: Repository เรียก commit หลังสลับไฟล์ live แล้ว)
+     */
+    Segment writeSegment(String projectId, List<Pledge> pledges) throws IOException {
+        Files.createDirectories(dir);
+        List<Segment> existing = byProject.getOrDefault(projectId, List.of());
+        String name = projectId + "-" + (existing.size() + 1) + ".csv.gz";
+        Path tmp = dir.resolve(name + ".tmp");
+
+        long success = 0, reject = 0;
+        int maxSeq = 0;
+        try (var w = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8))) {
+            w.write(PledgeFile.HEADER);
+            w.newLine();
+            for (Pledge p : pledges) {
+                w.write(PledgeFile.toCsv(p));
+                w.newLine();
+                if (p.getStatus() == PledgeStatus.SUCCESS) success++; else reject++;
+                maxSeq = Math.max(maxSeq, PledgeFile.sequenceOf(p.getPledgeId()));
+            }
+        }
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Segment(projectId, name, pledges.size(), success, reject, maxSeq);
+    }
+
+    /**เพิ่มแถวของ segment ที่เขียนแล้วลง index แล้วค่อยให้คนอ่านเห็น */
+    void commit(List<Segment> segs) throws IOException {
+        if (segs.isEmpty()) return;
+        boolean newIndex = !Files.exists(fIndex);
+        try (var bw = Files.newBufferedWriter(fIndex, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (newIndex) { bw.write(INDEX_HEADER); bw.newLine(); }
+            for (Segment s : segs) {
+                bw.write(String.join(",", s.projectId, s.file, String.valueOf(s.count),
+                        String.valueOf(s.success), String.valueOf(s.reject), String.valueOf(s.maxSeq)));
+                bw.newLine();
+            }
+        }
+        List<Segment> all = new ArrayList<>(segments());
+        all.addAll(segs);
+        byProject = group(all);
+    }
+
+    /**ลบ segment ที่เขียนไว้แต่ archive ไม่สำเร็จ (ยังไม่มีใน index) */
+    void discard(List<Segment> segs) {
+        for (Segment s : segs) {
+            try { Files.deleteIfExists(dir.resolve(s.file)); } catch (IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    /**อ่าน pledge ที่ archive ไว้ของ project นี้ทั้งหมด (ตามลำดับ segment) */
+    List<Pledge> read(String projectId, SymbolTable symbols) throws IOException {
+        List<Pledge> out = new ArrayList<>();
+        forEach(projectId, symbols, out::add);
+        return out;
+    }
+
+    /**stream ทีละ pledge ไม่เก็บเป็น list (projectId = null คือทุก segment) */
+    void forEach(String projectId, SymbolTable symbols, Consumer<Pledge> sink) throws IOException {
+        Collection<Segment> segs = (projectId == null) ? segments() : byProject.getOrDefault(projectId, List.of());
+        for (Segment s : segs) {
+            scanSegment(s, line -> sink.accept(PledgeFile.parse(line, symbols)));
+        }
+    }
+
+    /**ไล่บรรทัดข้อมูลดิบของ segment เดียว (thread-safe: แต่ละครั้งเปิดไฟล์เอง) */
+    void scanSegment(Segment s, Consumer<String> lines) throws IOException {
+        try (var br = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(dir.resolve(s.file))), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("pledgeId")) continue;
+                lines.accept(line);
+            }
+        }
+    }
+}
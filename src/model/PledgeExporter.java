@@ -0,0 +1,151 @@
+package model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ *PledgeExporter
+ *เขียน pledge ที่ผ่าน PledgeFilter ออกเป็น CSV หรือ JSON Lines ลง OutputStream ทีละรายการ
+ *ไม่สร้างข้อความกลาง (EAGER มีแค่ list ของ ref ที่ Repository copy ออกมา) และไม่เขียนไฟล์ใต้ lock ของ Repository
+ *
+ *exportPerProject แตกเป็นไฟล์ละโครงการ ทำขนานกันใน thread pool
+ *EAGER จัดกลุ่ม pledge ตามโครงการรอบเดียวก่อน แต่ละ job เขียนเฉพาะกลุ่มของตัวเอง (ไม่ไล่ทั้ง map ต่อโครงการ)
+ */
+public class PledgeExporter {
+
+    public enum Format { CSV, JSONL }
+
+    //คอลัมน์สำหรับคนอ่าน (ไม่รวม requestHash ที่ใช้ภายใน)
+    static final String CSV_HEADER = "pledgeId,userId,projectId,amount,tierName,status,createdAt";
+
+    //แหล่ง pledge ของการ export หนึ่งครั้ง
+    @FunctionalInterface
+    private interface Source {
+        void forEach(Consumer<Pledge> sink) throws IOException;
+    }
+
+    private final Repository repo;
+
+    public PledgeExporter(Repository repo) {
+        this.repo = repo;
+    }
+
+    /**export ลง out (ไม่ปิด out ให้) คืนจำนวนแถวที่เขียน */
+    public long export(PledgeFilter filter, Format format, OutputStream out) throws IOException {
+        return write(filter, format, out,
+                sink -> repo.forEachPledge(filter.getProjectId(), filter.isIncludeArchived(), sink));
+    }
+
+    private long write(PledgeFilter filter, Format format, OutputStream out, Source source) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        if (format == Format.CSV) { w.write(CSV_HEADER); w.write('\n'); }
+
+        long[] rows = {0};
+        StringBuilder sb = new StringBuilder(160);
+        try {
+            source.forEach(p -> {
+                if (!filter.matches(p)) return;
+                sb.setLength(0);
+                if (format == Format.CSV) appendCsv(sb, p); else appendJson(sb, p);
+                sb.append('\n');
+                try { w.append(sb); } catch (IOException e) { throw new UncheckedIOException(e); }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        w.flush();
+        return rows[0];
+    }
+
+    /**
+     *export แยกไฟล์ต่อโครงการ (<projectId>.csv / .jsonl) ลง outDir แบบขนาน
+     *คืนจำนวนแถวต่อโครงการ (ข้ามโครงการที่ไม่มีแถวผ่าน filter แต่ไฟล์ยังถูกสร้าง)
+     */
+    public Map<String, Long> exportPerProject(PledgeFilter filter, Format format, Path outDir, int threads)
+            throws IOException {
+        Files.createDirectories(outDir);
+        List<String> ids = new ArrayList<>();
+        if (filter.getProjectId() != null) ids.add(filter.getProjectId());
+        else for (Project p : repo.listProjects()) ids.add(p.getId());
+
+        Map<String, List<Pledge>> groups = repo.groupPledgesByProject(ids); //null = LAZY
+
+        String ext = (format == Format.CSV) ? ".csv" : ".jsonl";
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            Map<String, Future<Long>> jobs = new LinkedHashMap<>();
+            for (String id : ids) {
+                PledgeFilter f = filter.forProject(id);
+                List<Pledge> group = (groups == null) ? null : groups.get(id);
+                jobs.put(id, pool.submit(() -> {
+                    try (OutputStream os = Files.newOutputStream(outDir.resolve(id + ext))) {
+                        if (group == null) return export(f, format, os);
+                        return write(f, format, os, sink -> {
+                            if (f.isIncludeArchived()) repo.forEachArchivedPledge(id, sink);
+                            group.forEach(sink);
+                        });
+                    }
+                }));
+            }
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (var e : jobs.entrySet()) result.put(e.getKey(), e.getValue().get());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("export interrupted");
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException) throw (IOException) c;
+            throw new IOException(c);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //---------- encoders ----------
+
+    private static void appendCsv(StringBuilder sb, Pledge p) {
+        sb.append(p.getPledgeId()).append(',')
+          .append(p.getUserId()).append(',')
+          .append(p.getProjectId()).append(',')
+          .append(Money.encode(p.getAmountSatang())).append(',')
+          .append(p.getTierName() == null ? "" : p.getTierName()).append(',')
+          .append(p.getStatus().name()).append(',')
+          .append(p.getCreatedAt());
+    }
+
+    private static void appendJson(StringBuilder sb, Pledge p) {
+        sb.append("{\"pledgeId\":"); jsonString(sb, p.getPledgeId());
+        sb.append(",\"userId\":"); jsonString(sb, p.getUserId());
+        sb.append(",\"projectId\":"); jsonString(sb, p.getProjectId());
+        sb.append(",\"amount\":"); Money.appendFixed(sb, p.getAmountSatang());
+        sb.append(",\"tierName\":");
+        if (p.getTierName() == null) sb.append("null"); else jsonString(sb, p.getTierName());
+        sb.append(",\"status\":\"").append(p.getStatus().name()).append('"');
+        sb.append(",\"createdAt\":\"").append(p.getCreatedAt()).append("\"}");
+    }
+
+    private static void jsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,195 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *PledgeFile
+ *อ่าน/เขียน pledges.csv ระดับ byte offset ให้ Repository
+ *-scan ทั้งไฟล์พร้อม offset ของแต่ละบรรทัด (ไว้ทำ index แบบ lazy)
+ *-อ่านบรรทัดตาม offset โดยไม่ต้องไล่ไฟล์ใหม่
+ *-append ทีละบรรทัดแทนการเขียนทับทั้งไฟล์
+ */
+final class PledgeFile {
+
+    //requestHash (hex, ว่างได้) เพิ่มทีหลัง ไฟล์เก่าที่มี 7 คอลัมน์ยังอ่านได้
+    static final String HEADER = "pledgeId,userId,projectId,amount,tierName,status,createdAt,requestHash";
+
+    /**callback ต่อบรรทัดข้อมูล (ไม่รวม header/บรรทัดว่าง) */
+    interface LineVisitor {
+        void visit(long offset, String line);
+    }
+
+    private PledgeFile() {}
+
+    //---------- codec ----------
+
+    static Pledge parse(String line, SymbolTable symbols) {
+        String[] parts = Repository.splitCsv(line, 8);
+        return new Pledge(
+                parts[0], symbols.intern(parts[1]), symbols.intern(parts[2]), Repository.parseMoney(parts[3]),
+                symbols.intern(Repository.emptyToNull(parts[4])),
+                PledgeStatus.valueOf(parts[5]),
+                LocalDateTime.parse(parts[6]),
+                parseRequestHash(parts[7])
+        );
+    }
+
+    static String toCsv(Pledge p) {
+        return String.join(",",
+                p.getPledgeId(),
+                p.getUserId(),
+                p.getProjectId(),
+                Money.encode(p.getAmountSatang()),
+                Repository.nullToEmpty(p.getTierName()),
+                p.getStatus().name(),
+                p.getCreatedAt().toString(),
+                p.getRequestHash() == 0 ? "" : Long.toHexString(p.getRequestHash())
+        );
+    }
+
+    static long parseRequestHash(String s) {
+        return (s == null || s.isEmpty()) ? 0L : Long.parseUnsignedLong(s, 16);
+    }
+
+    /**ตัวเลขหลัง "P" ของ pledgeId (เช่น P012 -> 12) ถ้าไม่ใช่รูปแบบนี้คืน 0 */
+    static int sequenceOf(String pledgeId) {
+        if (pledgeId == null || pledgeId.length() < 2 || pledgeId.charAt(0) != 'P') return 0;
+        try { return Integer.parseInt(pledgeId, 1, pledgeId.length(), 10); } catch (NumberFormatException e) { return 0; }
+    }
+
+    //---------- I/O ----------
+
+    /**ไล่ทั้งไฟล์ทีละบรรทัดพร้อม byte offset (รองรับทั้ง \n และ \r\n) */
+    static void scan(Path f, LineVisitor v) throws IOException {
+        scanRange(f, 0, Long.MAX_VALUE, v);
+    }
+
+    /**
+     *ไล่เฉพาะบรรทัดที่ "เริ่ม" ใน [start, end) ใช้แบ่งไฟล์เป็นช่วงให้หลาย thread อ่านพร้อมกัน
+     *ถ้า start ตกกลางบรรทัด บรรทัดนั้นเป็นของช่วงก่อนหน้า
+     */
+    static void scanRange(Path f, long start, long end, LineVisitor v) throws IOException {
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ)) {
+            long offset = start;
+            if (start > 0) {
+                ByteBuffer one = ByteBuffer.allocate(1);
+                ch.read(one, start - 1);
+                if (one.get(0) != '\n') offset = -1; //ยังอยู่กลางบรรทัด ข้ามไปจนเจอ '\n'
+            }
+            //อ่านเป็นก้อนแล้วหา '\n' ใน byte[] ตรงๆ บรรทัดที่คร่อมก้อนเก็บต่อใน carry
+            ByteBuffer bb = ByteBuffer.allocate(1 << 16);
+            byte[] chunk = bb.array();
+            ByteArrayOutputStream carry = new ByteArrayOutputStream(128);
+            long pos = start, lineStart = offset;
+            int n;
+            while ((n = ch.read(bb.clear(), pos)) > 0) {
+                int from = 0;
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] != '\n') continue;
+                    if (lineStart >= 0) {
+                        if (carry.size() > 0) {
+                            carry.write(chunk, from, i - from);
+                            emit(carry, lineStart, v);
+                        } else {
+                            emit(chunk, from, i - from, lineStart, v);
+                        }
+                    }
+                    carry.reset();
+                    from = i + 1;
+                    lineStart = pos + from;
+                    if (lineStart >= end) return;
+                }
+                if (lineStart >= 0) carry.write(chunk, from, n - from);
+                pos += n;
+            }
+            if (lineStart >= 0) emit(carry, lineStart, v);
+        }
+    }
+
+    private static void emit(byte[] b, int off, int len, long lineStart, LineVisitor v) {
+        if (len > 0 && b[off + len - 1] == '\r') len--;
+        if (len == 0) return;
+        String line = new String(b, off, len, StandardCharsets.UTF_8);
+        if (line.isBlank() || line.startsWith("pledgeId")) return;
+        v.visit(lineStart, line);
+    }
+
+    private static void emit(ByteArrayOutputStream buf, long lineStart, LineVisitor v) {
+        String line = stripCr(buf.toString(StandardCharsets.UTF_8));
+        buf.reset();
+        if (line.isBlank() || line.startsWith("pledgeId")) return;
+        v.visit(lineStart, line);
+    }
+
+    /**อ่านบรรทัดตาม offset ที่ได้จาก scan/append (offsets[from..to) ) */
+    static String[] readLinesAt(Path f, long[] offsets, int from, int to) throws IOException {
+        String[] out = new String[to - from];
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ)) {
+            ByteBuffer bb = ByteBuffer.allocate(512);
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+            for (int i = from; i < to; i++) {
+                buf.reset();
+                long pos = offsets[i];
+                outer:
+                while (true) {
+                    bb.clear();
+                    int n = ch.read(bb, pos);
+                    if (n <= 0) break;
+                    for (int j = 0; j < n; j++) {
+                        byte b = bb.get(j);
+                        if (b == '\n') break outer;
+                        buf.write(b);
+                    }
+                    pos += n;
+                }
+                out[i - from] = stripCr(buf.toString(StandardCharsets.UTF_8));
+            }
+        }
+        return out;
+    }
+
+    /**ต่อท้ายไฟล์ 1 บรรทัด คืน offset ที่บรรทัดนี้เริ่ม */
+    static long append(Path f, String line) throws IOException {
+        return appendAll(f, List.of(line))[0];
+    }
+
+    /**ต่อท้ายหลายบรรทัดด้วยการเขียนครั้งเดียว คืน offset ของแต่ละบรรทัด */
+    static long[] appendAll(Path f, List<String> lines) throws IOException {
+        String nl = System.lineSeparator();
+        long[] rel = new long[lines.size()];
+        ByteArrayOutputStream all = new ByteArrayOutputStream(lines.size() * 80);
+        for (int i = 0; i < lines.size(); i++) {
+            rel[i] = all.size();
+            all.write((lines.get(i) + nl).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = all.toByteArray();
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = ch.size();
+            if (offset > 0) {
+                //บรรทัดสุดท้ายเดิมไม่มี newline (แก้ไฟล์ด้วยมือ) ต้องปิดบรรทัดก่อน
+                ByteBuffer last = ByteBuffer.allocate(1);
+                ch.read(last, offset - 1);
+                if (last.get(0) != '\n') {
+                    byte[] eol = nl.getBytes(StandardCharsets.UTF_8);
+                    ch.write(ByteBuffer.wrap(eol), offset);
+                    offset += eol.length;
+                }
+            }
+            ByteBuffer bb = ByteBuffer.wrap(bytes);
+            long pos = offset;
+            while (bb.hasRemaining()) pos += ch.write(bb, pos);
+            for (int i = 0; i < rel.length; i++) rel[i] += offset;
+            return rel;
+        }
+    }
+
+    private static String stripCr(String s) {
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
+}
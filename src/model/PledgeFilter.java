@@ -0,0 +1,48 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ *PledgeFilter
+ *เงื่อนไขเลือก pledge สำหรับ export/report ค่าที่เป็น null คือไม่กรองช่องนั้น
+ *
+ *ใช้แบบต่อกัน: new PledgeFilter().project("10000001").status(PledgeStatus.SUCCESS)
+ */
+public class PledgeFilter {
+    private String projectId;
+    private String userId;
+    private PledgeStatus status;
+    private LocalDateTime from; //รวม
+    private LocalDateTime to;   //ไม่รวม
+    private boolean includeArchived = true;
+
+    public PledgeFilter project(String projectId) { this.projectId = projectId; return this; }
+    public PledgeFilter user(String userId) { this.userId = userId; return this; }
+    public PledgeFilter status(PledgeStatus status) { this.status = status; return this; }
+    public PledgeFilter between(LocalDateTime from, LocalDateTime to) { this.from = from; this.to = to; return this; }
+    public PledgeFilter includeArchived(boolean include) { this.includeArchived = include; return this; }
+
+    public String getProjectId() { return projectId; }
+    public boolean isIncludeArchived() { return includeArchived; }
+
+    /**copy เดิมแต่เปลี่ยนเป็น project เดียว (ใช้ตอนแตกงาน export ต่อโครงการ) */
+    public PledgeFilter forProject(String projectId) {
+        PledgeFilter f = new PledgeFilter();
+        f.projectId = projectId;
+        f.userId = userId;
+        f.status = status;
+        f.from = from;
+        f.to = to;
+        f.includeArchived = includeArchived;
+        return f;
+    }
+
+    public boolean matches(Pledge p) {
+        if (projectId != null && !SymbolTable.same(projectId, p.getProjectId())) return false;
+        if (userId != null && !SymbolTable.same(userId, p.getUserId())) return false;
+        if (status != null && status != p.getStatus()) return false;
+        if (from != null && p.getCreatedAt().isBefore(from)) return false;
+        if (to != null && !p.getCreatedAt().isBefore(to)) return false;
+        return true;
+    }
+}
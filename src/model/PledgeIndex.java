@@ -0,0 +1,218 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ *PledgeIndex
+ *index ของ pledges.csv ที่บันทึกลงไฟล์ (resources/pledges.idx) ให้ LAZY boot ไม่ต้องไล่ทั้งไฟล์
+ *
+ *เก็บ ณ ตอน checkpoint:
+ *-stamp: pledges.csv ช่วง [0, covered) + fileKey + crc ของ 4KB แรก/ท้ายช่วง + stamp ของ archive/index.csv
+ *-aggregate ของแถวใน pledges.csv: ยอดนับตาม status, เลข id สูงสุด, สถานะ FundingRollup, request SUCCESS ใน window
+ *-offset ของทุกบรรทัดแยกตาม project (สารบัญอยู่ท้ายไฟล์)
+ *
+ *load: stamp ตรงก็อ่านแค่ aggregate + สารบัญ แล้ว Repository scan ต่อเฉพาะบรรทัดที่ต่อท้ายหลัง covered
+ *stamp ไม่ตรง (ไฟล์ถูกเขียนใหม่/แก้มือ/archive เปลี่ยน) คืน null ให้ scan ทั้งไฟล์แบบเดิมแล้วเขียน index ใหม่
+ *offset ของ project อ่านจากไฟล์ตอนถูกขอ ใน mem มีแค่สารบัญ (ไม่โตตามจำนวน pledge)
+ *เรียกภายใต้ lock ของ Repository
+ */
+final class PledgeIndex {
+
+    private static final int MAGIC = 0x50494458; //"PIDX"
+    private static final int VERSION = 1;
+    private static final int CHECK_BYTES = 4096;
+
+    /**aggregate ที่อ่านได้จาก index ที่ยังใช้ได้ */
+    static final class State {
+        final long covered;       //byte ของ pledges.csv ที่อยู่ใน index แล้ว
+        final long[] liveCounts;  //ตาม PledgeStatus.ordinal() เฉพาะแถวใน pledges.csv
+        final int pledgeSeq;
+
+        State(long covered, long[] liveCounts, int pledgeSeq) {
+            this.covered = covered;
+            this.liveCounts = liveCounts;
+            this.pledgeSeq = pledgeSeq;
+        }
+    }
+
+    //offset ของ project หนึ่งในไฟล์ index: long[count] เริ่มที่ pos
+    private static final class Block {
+        final long pos;
+        final int count;
+
+        Block(long pos, int count) {
+            this.pos = pos;
+            this.count = count;
+        }
+    }
+
+    private final Path file;
+    private Map<String, Block> blocks = Map.of();
+
+    PledgeIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     *อ่าน index ถ้ายังตรงกับ pledges.csv และ archive (archiveStamp) เติม rollup/requests จากที่บันทึกไว้
+     *null = ใช้ไม่ได้ (rollup/requests อาจถูกเติมไปบางส่วน ผู้เรียกต้องล้างก่อน scan ใหม่)
+     */
+    State load(Path pledges, String archiveStamp, FundingRollup rollup, RequestIndex requests,
+               SymbolTable symbols, long nowMillis) throws IOException {
+        blocks = Map.of();
+        if (!Files.exists(file) || !Files.exists(pledges)) return null;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            long covered = in.readLong();
+            String fileKey = in.readUTF();
+            long headCrc = in.readLong(), tailCrc = in.readLong();
+            if (!archiveStamp.equals(in.readUTF())) return null;
+            if (Files.size(pledges) < covered || !fileKey.equals(fileKey(pledges))) return null;
+            try (FileChannel ch = FileChannel.open(pledges, StandardOpenOption.READ)) {
+                if (crc(ch, 0, Math.min(CHECK_BYTES, covered)) != headCrc) return null;
+                if (crc(ch, Math.max(0, covered - CHECK_BYTES), covered) != tailCrc) return null;
+            }
+
+            long[] counts = new long[PledgeStatus.values().length];
+            for (int i = 0; i < counts.length; i++) counts[i] = in.readLong();
+            int seq = in.readInt();
+            rollup.read(in, symbols);
+            for (int n = in.readInt(); n > 0; n--) {
+                long hash = in.readLong();
+                String pledgeId = in.readUTF();
+                long at = in.readLong();
+                if (nowMillis - at <= RequestIndex.WINDOW_MILLIS) requests.put(hash, pledgeId, List.of(), at);
+            }
+            State st = new State(covered, counts, seq);
+            blocks = readDirectory(symbols);
+            return st;
+        }
+    }
+
+    //สารบัญอยู่ท้ายไฟล์: ... [n, (projectId, pos, count)*] [ตำแหน่งเริ่มสารบัญ 8 byte]
+    private Map<String, Block> readDirectory(SymbolTable symbols) throws IOException {
+        Map<String, Block> out = new HashMap<>();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(8);
+            ch.read(last, ch.size() - 8);
+            ch.position(last.getLong(0));
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+            for (int n = in.readInt(); n > 0; n--) {
+                String projectId = symbols.intern(in.readUTF());
+                out.put(projectId, new Block(in.readLong(), in.readInt()));
+            }
+        }
+        return out;
+    }
+
+    /**offset ทั้งหมดของ project: ส่วนที่อยู่ใน index + tail (บรรทัดที่ต่อท้ายหลัง checkpoint) */
+    long[] offsets(String projectId, Repository.OffsetList tail) throws IOException {
+        Block b = blocks.get(projectId);
+        int n = (b == null) ? 0 : b.count, t = (tail == null) ? 0 : tail.size;
+        long[] out = new long[n + t];
+        if (n > 0) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer bb = ByteBuffer.allocate(n * 8);
+                long pos = b.pos;
+                while (bb.hasRemaining()) {
+                    int r = ch.read(bb, pos);
+                    if (r < 0) throw new EOFException(file.toString());
+                    pos += r;
+                }
+                bb.flip().asLongBuffer().get(out, 0, n);
+            }
+        }
+        if (t > 0) System.arraycopy(tail.offsets, 0, out, n, t);
+        return out;
+    }
+
+    /**
+     *เขียน index ใหม่ให้ครอบทั้ง pledges.csv ณ ตอนนี้ (offset เดิมในไฟล์ + tails) แล้ว rename ทับ
+     *สำเร็จแล้ว tails ถูกรวมเข้าไฟล์ ผู้เรียกล้าง tails ได้
+     */
+    void write(Path pledges, String archiveStamp, long[] liveCounts, int pledgeSeq, FundingRollup rollup,
+               RequestIndex requests, Map<String, Repository.OffsetList> tails) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<String, Block> next = new HashMap<>();
+        try {
+            long covered = Files.size(pledges);
+            long headCrc, tailCrc;
+            try (FileChannel ch = FileChannel.open(pledges, StandardOpenOption.READ)) {
+                headCrc = crc(ch, 0, Math.min(CHECK_BYTES, covered));
+                tailCrc = crc(ch, Math.max(0, covered - CHECK_BYTES), covered);
+            }
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(covered);
+                out.writeUTF(fileKey(pledges));
+                out.writeLong(headCrc);
+                out.writeLong(tailCrc);
+                out.writeUTF(archiveStamp);
+                for (long c : liveCounts) out.writeLong(c);
+                out.writeInt(pledgeSeq);
+                rollup.write(out);
+                int[] n = {0};
+                requests.forEachSuccess((hash, id, at) -> n[0]++);
+                out.writeInt(n[0]);
+                requests.forEachSuccess((hash, id, at) -> {
+                    out.writeLong(hash);
+                    out.writeUTF(id);
+                    out.writeLong(at);
+                });
+
+                //offset ต่อ project: ของเดิมในไฟล์ index ก่อน แล้วต่อด้วย tail
+                long pos = out.size(); //ยังไม่ถึง 2GB (ส่วนหัว) หลังจากนี้นับเอง
+                Set<String> ids = new LinkedHashSet<>(blocks.keySet());
+                ids.addAll(tails.keySet());
+                for (String id : ids) {
+                    long[] offs = offsets(id, tails.get(id));
+                    for (long o : offs) out.writeLong(o);
+                    next.put(id, new Block(pos, offs.length));
+                    pos += 8L * offs.length;
+                }
+                out.writeInt(next.size());
+                for (var e : next.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().pos);
+                    out.writeInt(e.getValue().count);
+                }
+                out.writeLong(pos);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        blocks = next;
+    }
+
+    /**pledges.csv ถูกเขียนใหม่ทั้งไฟล์: offset เดิมใช้ไม่ได้แล้ว */
+    void invalidate() {
+        blocks = Map.of();
+        try { Files.deleteIfExists(file); } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    //ตัวตนของไฟล์บนดิสก์ (inode) เปลี่ยนเมื่อไฟล์ถูกแทนด้วย rename ไม่เปลี่ยนตอนต่อท้าย
+    private static String fileKey(Path f) throws IOException {
+        Object key = Files.readAttributes(f, BasicFileAttributes.class).fileKey();
+        return (key == null) ? "" : key.toString();
+    }
+
+    private static long crc(FileChannel ch, long from, long to) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer bb = ByteBuffer.allocate((int) (to - from));
+        while (bb.hasRemaining()) {
+            if (ch.read(bb, from + bb.position()) < 0) break;
+        }
+        crc.update(bb.flip());
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,181 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *PledgeRules
+ *ตรวจ pledge เป็น pipeline ของกฎ หยุดที่กฎแรกที่ไม่ผ่าน คืนเป็น bit ของ RejectReason (0 = ผ่าน)
+ *ทางที่ผ่านไม่สร้าง object/ข้อความ ข้อความสร้างทีหลังด้วย describe เฉพาะตอน reject
+ *
+ *กฎพื้นฐานทุกโครงการ: มีโครงการ, ยังไม่ปิด, amount > 0, มี tier ที่เลือก, amount >= min ของ tier
+ *กฎเพิ่มต่อโครงการ (resources/pledge_rules.csv: projectId,maxAmount,maxPerUser ว่าง/0 = ไม่จำกัด)
+ *-maxAmount  : ยอดสูงสุดต่อ pledge
+ *-maxPerUser : ยอด SUCCESS รวมต่อ user ในโครงการนั้น (Repository ส่ง pledge SUCCESS มาให้นับ)
+ *configure แล้ว compile เป็น array ของ Rule ต่อโครงการครั้งเดียว ไม่ต้องแก้ AppController
+ */
+public final class PledgeRules {
+
+    public static final String FILE = "pledge_rules.csv";
+
+    /**ค่าที่ตั้งได้ต่อโครงการ (สตางค์ 0 = ไม่จำกัด) */
+    public static final class Config {
+        public final long maxAmount;
+        public final long maxPerUser;
+
+        public Config(long maxAmount, long maxPerUser) {
+            this.maxAmount = maxAmount;
+            this.maxPerUser = maxPerUser;
+        }
+
+        boolean isEmpty() { return maxAmount <= 0 && maxPerUser <= 0; }
+    }
+
+    //กฎเพิ่มของโครงการ project/tier เป็นของ state เดียวกับที่ตรวจ userId อาจเป็น null
+    //pending = ยอดของ user คนนี้ในโครงการนี้ที่ผ่านแล้วแต่ยังไม่ commit (รายการก่อนหน้าในตะกร้าเดียวกัน)
+    @FunctionalInterface
+    interface Rule {
+        int check(Project p, RewardTier tier, long amount, String userId, long pending);
+    }
+
+    private static final Rule[] NONE = new Rule[0];
+
+    private volatile Map<String, Config> configs = Map.of();
+    private final Map<String, Rule[]> compiled = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, AtomicLong>> perUser = new ConcurrentHashMap<>(); //projectId -> userId -> ยอด
+
+    //---------- config ----------
+
+    /**แทนชุดกฎทั้งหมด (Repository เติมยอดต่อ user ของโครงการที่มี maxPerUser ต่อด้วย countSuccess) */
+    synchronized void configure(Map<String, Config> byProject) {
+        Map<String, Config> next = new HashMap<>();
+        byProject.forEach((id, c) -> { if (!c.isEmpty()) next.put(id, c); });
+        configs = Collections.unmodifiableMap(next);
+        perUser.clear();
+        compiled.clear();
+        next.forEach((id, c) -> compiled.put(id, compile(id, c)));
+    }
+
+    public Map<String, Config> configs() { return configs; }
+
+    /**โครงการนี้มี maxPerUser ไหม (batch ต้องนับยอดที่ยังไม่ commit ของ user เดียวกันส่งมาเป็น pending) */
+    public boolean limitsPerUser(String projectId) {
+        Config c = configs.get(projectId);
+        return c != null && c.maxPerUser > 0;
+    }
+
+    /**key ของยอด pending ต่อ (โครงการ, user) ใน batch */
+    public static String pendingKey(String projectId, String userId) {
+        return projectId + '\0' + userId;
+    }
+
+    /**โครงการที่ต้องนับยอดต่อ user */
+    Set<String> trackedProjects() { return perUser.keySet(); }
+
+    private Rule[] compile(String projectId, Config c) {
+        List<Rule> rules = new ArrayList<>(2);
+        if (c.maxAmount > 0) {
+            long max = c.maxAmount;
+            rules.add((p, t, amount, u, pending) -> amount > max ? RejectReason.ABOVE_MAX.bit() : 0);
+        }
+        if (c.maxPerUser > 0) {
+            long limit = c.maxPerUser;
+            Map<String, AtomicLong> totals = perUser.computeIfAbsent(projectId, k -> new ConcurrentHashMap<>());
+            rules.add((p, t, amount, u, pending) -> {
+                if (u == null) return 0;
+                AtomicLong have = totals.get(u);
+                return (have == null ? 0 : have.get()) + pending + amount > limit ? RejectReason.USER_LIMIT.bit() : 0;
+            });
+        }
+        return rules.toArray(NONE);
+    }
+
+    /**นับ pledge SUCCESS เข้ายอดต่อ user (เฉพาะโครงการที่มี maxPerUser) */
+    void countSuccess(Pledge p) {
+        Map<String, AtomicLong> totals = perUser.get(p.getProjectId());
+        if (totals != null && p.getStatus() == PledgeStatus.SUCCESS) {
+            totals.computeIfAbsent(p.getUserId(), k -> new AtomicLong()).addAndGet(p.getAmountSatang());
+        }
+    }
+
+    //---------- check ----------
+
+    /**ตรวจกับ snapshot คืน mask (0 = ผ่าน ยังไม่ได้ดู quota/login) */
+    public int check(RepoSnapshot snap, String userId, String projectId, long amount, String tierName) {
+        return check(snap, userId, projectId, amount, tierName, 0);
+    }
+
+    /**เหมือน check แต่นับ pending (สตางค์) ของ user คนเดียวกันในโครงการนี้ที่ยังไม่ commit เข้ายอดต่อ user ด้วย */
+    public int check(RepoSnapshot snap, String userId, String projectId, long amount, String tierName, long pending) {
+        Project p = snap.project(projectId);
+        if (p == null) return RejectReason.PROJECT_NOT_FOUND.bit();
+        if (p.isClosed()) return RejectReason.DEADLINE_PASSED.bit();
+        if (amount <= 0) return RejectReason.AMOUNT_NOT_POSITIVE.bit();
+        RewardTier tier = null;
+        if (tierName != null && !tierName.isBlank()) {
+            tier = snap.tier(projectId, tierName);
+            if (tier == null) return RejectReason.TIER_NOT_FOUND.bit();
+            if (amount < tier.getMinAmountSatang()) return RejectReason.BELOW_MIN.bit();
+        }
+        return checkExtras(p, tier, amount, userId, pending);
+    }
+
+    /**เฉพาะกฎเพิ่มของโครงการ (Repository ตรวจซ้ำใต้ lock ก่อน commit) */
+    int checkExtras(Project p, RewardTier tier, long amount, String userId) {
+        return checkExtras(p, tier, amount, userId, 0);
+    }
+
+    private int checkExtras(Project p, RewardTier tier, long amount, String userId, long pending) {
+        Rule[] rules = compiled.getOrDefault(p.getId(), NONE);
+        for (Rule r : rules) {
+            int m = r.check(p, tier, amount, userId, pending);
+            if (m != 0) return m;
+        }
+        return 0;
+    }
+
+    /**tier ที่เลือกใน snapshot (null ถ้าไม่ได้เลือกหรือไม่มี) */
+    public static RewardTier findTier(RepoSnapshot snap, String projectId, String tierName) {
+        return (tierName == null || tierName.isBlank()) ? null : snap.tier(projectId, tierName);
+    }
+
+    //---------- messages (ทาง reject เท่านั้น) ----------
+
+    /**ข้อความสำหรับผู้ใช้ของแต่ละ bit ใน mask (ขึ้นต้นตรงกับ prefix ของ RejectReason) */
+    public List<String> describe(int mask, RepoSnapshot snap, String userId, String projectId, long amount,
+                                 String tierName) {
+        List<String> out = new ArrayList<>(2);
+        Project p = snap.project(projectId);
+        RewardTier tier = (p == null) ? null : findTier(snap, projectId, tierName);
+        Config c = configs.get(projectId);
+        for (RejectReason r : RejectReason.decode(mask)) {
+            out.add(switch (r) {
+                case NOT_LOGGED_IN -> "Please log in before pledging.";
+                case USER_NOT_FOUND -> "User not found: " + userId;
+                case PROJECT_NOT_FOUND -> "Project not found: " + projectId;
+                case DEADLINE_PASSED -> "Project deadline has passed (deadline: "
+                        + (p == null ? "-" : p.getDeadline()) + ").";
+                case AMOUNT_NOT_POSITIVE -> "Amount must be greater than 0.";
+                case INVALID_AMOUNT -> "Invalid amount.";
+                case TIER_NOT_FOUND -> "Reward tier '" + tierName + "' not found for this project.";
+                case BELOW_MIN -> "Amount is below this reward's minimum (min: "
+                        + (tier == null ? "-" : Money.format(tier.getMinAmountSatang())) + ").";
+                case NO_QUOTA -> "This reward has no remaining quota.";
+                case ABOVE_MAX -> "Amount is above this project's maximum per pledge (max: "
+                        + (c == null ? "-" : Money.format(c.maxAmount)) + ").";
+                case USER_LIMIT -> "Amount exceeds this project's limit per user (limit: "
+                        + (c == null ? "-" : Money.format(c.maxPerUser)) + ", pledged: "
+                        + Money.format(pledgedBy(projectId, userId)) + ").";
+                case OTHER -> "Pledge rejected.";
+            });
+        }
+        return out;
+    }
+
+    private long pledgedBy(String projectId, String userId) {
+        Map<String, AtomicLong> totals = perUser.get(projectId);
+        AtomicLong have = (totals == null || userId == null) ? null : totals.get(userId);
+        return have == null ? 0 : have.get();
+    }
+}
@@ -1,41 +1,64 @@
-package model;
-
-import java.time.LocalDate;
-
-/**
- * เก็บข้อมูลโครงการที่เปิดให้สนับสนุน*/
-
-public class Project {
-    private String id;          //รหัสโครงการ 8 หลัก ตัวแรกไม่ใช่ 0
-    private String name;        //ชื่อโครงการ
-    private double goal;        //เป้าหมายการระดมทุน
-    private double raised;      //ยอดที่ระดมได้ปัจจุบัน
-    private LocalDate deadline; //วันสิ้นสุดโครงการ
-    private String category;    //หมวดหมู่ 
-
-    public Project(String id, String name, double goal, LocalDate deadline, String category) {
-        this.id = id;
-        this.name = name;
-        this.goal = goal;
-        this.raised = 0; //เริ่มต้นที่ 0
-        this.deadline = deadline;
-        this.category = category;
-    }
-
-    //Getters
-    public String getId() { return id; }
-    public String getName() { return name; }
-    public double getGoal() { return goal; }
-    public double getRaised() { return raised; }
-    public LocalDate getDeadline() { return deadline; }
-    public String getCategory() { return category; }
-
-    //Setters
-    public void addRaised(double amount) { this.raised += amount; }
-
-    @Override
-    public String toString() {
-        return String.format("%s (%s) - %.2f/%.2f THB, deadline: %s",
-                name, category, raised, goal, deadline.toString());
-    }
-}
+package model;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * เก็บข้อมูลโครงการที่เปิดให้สนับสนุน*/
+
+public class Project {
+    private String id;          //รหัสโครงการ 8 หลัก ตัวแรกไม่ใช่ 0
+    private String name;        //ชื่อโครงการ
+    private long goal;          //เป้าหมายการระดมทุน (สตางค์)
+    private final AtomicLong raised = new AtomicLong(); //ยอดที่ระดมได้ปัจจุบัน (สตางค์) บวกแบบ CAS ไม่ต้องล็อก
+    private LocalDate deadline; //วันสิ้นสุดโครงการ
+    private String category;    //หมวดหมู่ 
+    private boolean closed;     //ถึง deadline แล้ว (Repository ตั้งผ่าน DeadlineWheel ไม่ได้เก็บลงไฟล์)
+
+    public Project(String id, String name, long goal, LocalDate deadline, String category) {
+        this.id = id;
+        this.name = name;
+        this.goal = goal;
+        //raised เริ่มต้นที่ 0
+        this.deadline = deadline;
+        this.category = category;
+    }
+
+    //Getters
+    public String getId() { return id; }
+    public String getName() { return name; }
+    public long getGoalSatang() { return goal; }
+    public long getRaisedSatang() { return raised.get(); }
+    public LocalDate getDeadline() { return deadline; }
+    public String getCategory() { return category; }
+    public boolean isClosed() { return closed; }
+
+    //Setters
+    void addRaised(long satang) { raised.addAndGet(satang); }
+
+    void setClosed(boolean closed) { this.closed = closed; }
+
+    //ใช้ตอน hot reload: รับค่าที่คนแก้ในไฟล์ (raised ไม่แตะ)
+    void redefine(String name, long goal, LocalDate deadline, String category) {
+        this.name = name;
+        this.goal = goal;
+        this.deadline = deadline;
+        this.category = category;
+    }
+
+    //ข้อมูลที่คนแก้ได้ตรงกันไหม (ไม่นับ raised/closed)
+    boolean sameDefinition(Project o) {
+        return name.equals(o.name) && goal == o.goal && category.equals(o.category)
+                && Objects.equals(deadline, o.deadline);
+    }
+
+    //ใช้ตอน reconcile เท่านั้น
+    void resetRaised(long satang) { raised.set(satang); }
+
+    @Override
+    public String toString() {
+        return name + " (" + category + ") - " + Money.format(raised.get()) + "/" + Money.format(goal)
+                + " THB, deadline: " + deadline;
+    }
+}
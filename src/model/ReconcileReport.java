@@ -0,0 +1,63 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *ReconcileReport
+ *ผลการ reconcile: รายการที่ค่าที่เก็บไว้ไม่ตรงกับที่คำนวณจาก pledge
+ *ค่าเงินเป็นสตางค์ ค่า quota เป็นจำนวนสิทธิ์คงเหลือ
+ */
+public class ReconcileReport {
+
+    public enum Kind { PROJECT_RAISED, TIER_QUOTA }
+
+    public static class Drift {
+        public final Kind kind;
+        public final String projectId;
+        public final String tierName; //null ถ้าเป็น PROJECT_RAISED
+        public final long stored;
+        public final long computed;
+
+        Drift(Kind kind, String projectId, String tierName, long stored, long computed) {
+            this.kind = kind;
+            this.projectId = projectId;
+            this.tierName = tierName;
+            this.stored = stored;
+            this.computed = computed;
+        }
+
+        @Override
+        public String toString() {
+            return kind == Kind.PROJECT_RAISED
+                    ? projectId + " raised " + Money.format(stored) + " -> " + Money.format(computed)
+                    : projectId + "/" + tierName + " quota " + stored + " -> " + computed;
+        }
+    }
+
+    private final List<Drift> drifts = new ArrayList<>();
+    private long pledgesScanned;
+    private int tiersInitialized; //tier รุ่นเก่าที่ยังไม่มี capacity (repair = เติมให้แล้ว ไม่นับเป็น drift)
+    private long elapsedMillis;
+    private boolean repaired;
+
+    void addDrift(Drift d) { drifts.add(d); }
+    void setPledgesScanned(long n) { pledgesScanned = n; }
+    void incTiersInitialized() { tiersInitialized++; }
+    void setElapsedMillis(long ms) { elapsedMillis = ms; }
+    void setRepaired(boolean r) { repaired = r; }
+
+    public List<Drift> getDrifts() { return Collections.unmodifiableList(drifts); }
+    public boolean isClean() { return drifts.isEmpty(); }
+    public long getPledgesScanned() { return pledgesScanned; }
+    public int getTiersInitialized() { return tiersInitialized; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isRepaired() { return repaired; }
+
+    @Override
+    public String toString() {
+        return String.format("pledges=%d drifts=%d tiersInitialized=%d repaired=%s took=%dms",
+                pledgesScanned, drifts.size(), tiersInitialized, repaired, elapsedMillis);
+    }
+}
@@ -0,0 +1,144 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *Reconciler
+ *คำนวณ raised ต่อ project และจำนวน quota ที่ถูกใช้ต่อ tier ใหม่จาก pledge จริง
+ *(pledges.csv + segment ใน archive) แล้วเทียบกับค่าที่เก็บใน projects.csv / reward_tiers.csv
+ *
+ *อ่านขนานด้วย fork-join: ไฟล์ live แบ่งเป็นช่วง byte, segment ของ archive หนึ่งงานต่อไฟล์
+ *แต่ละงานสะสมผลใน Totals ของตัวเองแล้วค่อย merge ตอน join (ไม่มี lock ระหว่างอ่าน)
+ */
+final class Reconciler {
+
+    //ช่วงไฟล์ที่เล็กกว่านี้อ่านตรงๆ ไม่แบ่งต่อ
+    private static final long SPLIT_BYTES = 8L << 20;
+
+    private final Path livePledges;
+    private final PledgeArchive archive;
+    private final ForkJoinPool pool;
+
+    Reconciler(Path livePledges, PledgeArchive archive, ForkJoinPool pool) {
+        this.livePledges = livePledges;
+        this.archive = archive;
+        this.pool = pool;
+    }
+
+    //---------- ผลรวม ----------
+
+    /**ยอดที่คำนวณได้ของ project เดียว */
+    static final class ProjectTotals {
+        long raised;
+        final Map<String, int[]> tierConsumed = new HashMap<>();
+
+        void merge(ProjectTotals o) {
+            raised += o.raised;
+            for (var e : o.tierConsumed.entrySet()) {
+                tierConsumed.computeIfAbsent(e.getKey(), k -> new int[1])[0] += e.getValue()[0];
+            }
+        }
+
+        int consumed(String tierName) {
+            int[] c = tierConsumed.get(tierName);
+            return c == null ? 0 : c[0];
+        }
+    }
+
+    static final class Totals {
+        final Map<String, ProjectTotals> byProject = new HashMap<>();
+        long pledges;
+
+        //หา comma เองแทน split: ใช้แค่ projectId, amount, tierName, status
+        void add(String line) {
+            pledges++;
+            int c1 = line.indexOf(',');
+            int c2 = line.indexOf(',', c1 + 1);
+            int c3 = line.indexOf(',', c2 + 1);
+            int c4 = line.indexOf(',', c3 + 1);
+            int c5 = line.indexOf(',', c4 + 1);
+            if (c5 < 0 || !line.startsWith("SUCCESS", c5 + 1)) return;
+
+            ProjectTotals t = byProject.computeIfAbsent(line.substring(c2 + 1, c3), k -> new ProjectTotals());
+            t.raised += Repository.parseMoney(line.substring(c3 + 1, c4));
+            if (c5 > c4 + 1) t.tierConsumed.computeIfAbsent(line.substring(c4 + 1, c5), k -> new int[1])[0]++;
+        }
+
+        Totals merge(Totals o) {
+            pledges += o.pledges;
+            for (var e : o.byProject.entrySet()) {
+                byProject.merge(e.getKey(), e.getValue(), (a, b) -> { a.merge(b); return a; });
+            }
+            return this;
+        }
+    }
+
+    /**อ่านทุกแหล่งแบบขนานแล้วรวมผล */
+    Totals compute() throws IOException {
+        try {
+            return pool.invoke(new RootTask());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class RootTask extends RecursiveTask<Totals> {
+        @Override
+        protected Totals compute() {
+            List<RecursiveTask<Totals>> tasks = new ArrayList<>();
+            try {
+                if (Files.exists(livePledges)) tasks.add(new RangeTask(0, Files.size(livePledges)));
+            } catch (IOException e) { throw new UncheckedIOException(e); }
+            for (PledgeArchive.Segment s : archive.segments()) tasks.add(new SegmentTask(s));
+
+            Totals total = new Totals();
+            for (var t : invokeAll(tasks)) total.merge(t.join());
+            return total;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class RangeTask extends RecursiveTask<Totals> {
+        private final long start, end;
+
+        RangeTask(long start, long end) { this.start = start; this.end = end; }
+
+        @Override
+        protected Totals compute() {
+            if (end - start > SPLIT_BYTES) {
+                long mid = start + (end - start) / 2;
+                RangeTask left = new RangeTask(start, mid);
+                left.fork();
+                Totals right = new RangeTask(mid, end).compute();
+                return right.merge(left.join());
+            }
+            Totals t = new Totals();
+            try {
+                PledgeFile.scanRange(livePledges, start, end, (off, line) -> t.add(line));
+            } catch (IOException e) { throw new UncheckedIOException(e); }
+            return t;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class SegmentTask extends RecursiveTask<Totals> {
+        private final PledgeArchive.Segment segment;
+
+        SegmentTask(PledgeArchive.Segment segment) { this.segment = segment; }
+
+        @Override
+        protected Totals compute() {
+            Totals t = new Totals();
+            try {
+                archive.scanSegment(segment, t::add);
+            } catch (IOException e) { throw new UncheckedIOException(e); }
+            return t;
+        }
+    }
+}
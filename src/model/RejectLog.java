@@ -0,0 +1,176 @@
+package model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ *RejectLog
+ *บันทึก pledge ที่ไม่ผ่านแยกจาก pledges.csv แบบ append-only ขนาดเล็ก
+ *
+ *resources/rejects/
+ *  total             : จำนวน reject ทั้งหมดที่เคยเกิด (ตรงเสมอ ไม่ขึ้นกับ sampling/retention)
+ *                      เขียนไฟล์ tmp แล้ว rename ทับ crash กลางทางก็ยังเหลือค่าเดิมครบ
+ *  <yyyy-MM-dd>.log  : epochMillis,userId,projectId,amount,tierName,reasonMask (ไฟล์ละวัน)
+ *
+ *-userId/projectId/tierName มาจาก client จึงผ่าน Repository.esc (ตัด , และขึ้นบรรทัดใหม่) ก่อนเขียน
+ *-sampleEvery = n: เขียนลงไฟล์ 1 ใน n รายการ (นับเข้า total ทุกรายการ)
+ *-retentionDays: ไฟล์วันที่เก่ากว่านี้ถูกลบตอน load และตอนขึ้นวันใหม่
+ */
+public final class RejectLog {
+
+    /**reject 1 รายการ (ไม่มี pledgeId ไม่กินเลข id ของ pledge) */
+    public static final class Entry {
+        public final long epochMillis;
+        public final String userId;
+        public final String projectId;
+        public final long amount;       //สตางค์
+        public final String tierName;   //nullable
+        public final int reasons;       //RejectReason bit mask
+
+        public Entry(long epochMillis, String userId, String projectId, long amount, String tierName, int reasons) {
+            this.epochMillis = epochMillis;
+            this.userId = userId;
+            this.projectId = projectId;
+            this.amount = amount;
+            this.tierName = tierName;
+            this.reasons = reasons;
+        }
+
+        /**สร้างจากข้อความ error ของ Controller ณ เวลาปัจจุบัน */
+        public static Entry of(String userId, String projectId, long amount, String tierName, List<String> errors) {
+            return of(userId, projectId, amount, tierName, RejectReason.maskOf(errors));
+        }
+
+        /**สร้างจาก mask ของ PledgeRules ตรงๆ ณ เวลาปัจจุบัน */
+        public static Entry of(String userId, String projectId, long amount, String tierName, int reasons) {
+            return new Entry(System.currentTimeMillis(), userId, projectId, amount, tierName, reasons);
+        }
+
+        static Entry of(Pledge p, int reasons) {
+            return new Entry(p.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    p.getUserId(), p.getProjectId(), p.getAmountSatang(), p.getTierName(), reasons);
+        }
+
+        public List<RejectReason> getReasons() { return RejectReason.decode(reasons); }
+    }
+
+    private final Path dir;
+    private final Path fTotal;
+    private int retentionDays = 30;
+    private int sampleEvery = 1;
+
+    private long total;
+    private long sampleSeq;
+    private LocalDate purgedFor; //วันล่าสุดที่กวาดไฟล์เก่าแล้ว
+
+    RejectLog(Path dir) {
+        this.dir = dir;
+        this.fTotal = dir.resolve("total");
+    }
+
+    /**ตั้งค่า retention/sampling แล้วกวาดไฟล์เก่าตามค่าใหม่ทันที */
+    public synchronized void configure(int retentionDays, int sampleEvery) {
+        this.retentionDays = Math.max(1, retentionDays);
+        this.sampleEvery = Math.max(1, sampleEvery);
+        purge(LocalDate.now());
+    }
+
+    public synchronized long total() { return total; }
+    public synchronized int getRetentionDays() { return retentionDays; }
+    public synchronized int getSampleEvery() { return sampleEvery; }
+
+    synchronized void load() {
+        total = 0;
+        if (Files.exists(fTotal)) {
+            try {
+                total = Long.parseLong(Files.readString(fTotal).trim());
+            } catch (IOException | NumberFormatException e) { e.printStackTrace(); }
+        }
+        purge(LocalDate.now());
+    }
+
+    synchronized void append(List<Entry> entries) {
+        if (entries.isEmpty()) return;
+        LocalDate today = LocalDate.now();
+        if (!today.equals(purgedFor)) purge(today);
+
+        StringBuilder sb = new StringBuilder(entries.size() * 48);
+        String nl = System.lineSeparator();
+        for (Entry e : entries) {
+            if (sampleSeq++ % sampleEvery != 0) continue;
+            sb.append(e.epochMillis).append(',')
+              .append(Repository.esc(e.userId)).append(',')
+              .append(Repository.esc(e.projectId)).append(',')
+              .append(Money.encode(e.amount)).append(',')
+              .append(Repository.esc(e.tierName)).append(',')
+              .append(Integer.toHexString(e.reasons)).append(nl);
+        }
+        total += entries.size();
+        try {
+            Files.createDirectories(dir);
+            if (sb.length() > 0) {
+                Files.write(dayFile(today), sb.toString().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            Path tmp = dir.resolve("total.tmp");
+            Files.writeString(tmp, Long.toString(total));
+            Files.move(tmp, fTotal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    /**ไล่ reject ที่ยังเก็บอยู่ (ตาม retention/sampling) เรียงตามวัน */
+    public synchronized void forEach(SymbolTable symbols, Consumer<Entry> sink) throws IOException {
+        for (Path f : dayFiles()) {
+            try (var br = Files.newBufferedReader(f)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    String[] p = Repository.splitCsv(line, 6);
+                    Entry e;
+                    try {
+                        e = new Entry(Long.parseLong(p[0]), symbols.lookup(p[1]), symbols.lookup(p[2]),
+                                Repository.parseMoney(p[3]), symbols.lookup(Repository.emptyToNull(p[4])),
+                                Integer.parseInt(p[5], 16));
+                    } catch (RuntimeException bad) {
+                        continue; //บรรทัดเสียจากไฟล์รุ่นก่อนที่ยังไม่ได้ esc ข้ามไป
+                    }
+                    sink.accept(e);
+                }
+            }
+        }
+    }
+
+    //---------- files ----------
+
+    private Path dayFile(LocalDate day) { return dir.resolve(day + ".log"); }
+
+    private List<Path> dayFiles() throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (var ds = Files.newDirectoryStream(dir, "*.log")) {
+            for (Path p : ds) out.add(p);
+        }
+        out.sort(null); //ชื่อไฟล์เป็น ISO date เรียงตามตัวอักษร = เรียงตามวัน
+        return out;
+    }
+
+    private void purge(LocalDate today) {
+        purgedFor = today;
+        LocalDate oldest = today.minusDays(retentionDays - 1L);
+        try {
+            for (Path f : dayFiles()) {
+                String name = f.getFileName().toString();
+                try {
+                    if (LocalDate.parse(name.substring(0, name.length() - 4)).isBefore(oldest)) Files.delete(f);
+                } catch (DateTimeException ignored) {
+                    //ไม่ใช่ไฟล์ของเรา
+                }
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+}
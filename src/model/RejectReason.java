@@ -0,0 +1,52 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *RejectReason
+ *เหตุผลที่ pledge ไม่ผ่าน เก็บใน RejectLog เป็น bit mask แทนข้อความเต็ม
+ *จับคู่จากต้นข้อความ error ที่ AppController สร้าง (ข้อความที่ไม่รู้จัก = OTHER)
+ *bit มาจาก ordinal และถูกเขียนลงไฟล์แล้ว: ค่าใหม่ต่อท้ายเท่านั้น
+ */
+public enum RejectReason {
+    NOT_LOGGED_IN("Please log in"),
+    USER_NOT_FOUND("User not found"),
+    PROJECT_NOT_FOUND("Project not found"),
+    DEADLINE_PASSED("Project deadline has passed"),
+    AMOUNT_NOT_POSITIVE("Amount must be greater than 0"),
+    INVALID_AMOUNT("Invalid amount"),
+    TIER_NOT_FOUND("Reward tier '"),
+    BELOW_MIN("Amount is below"),
+    NO_QUOTA("This reward has no remaining quota"),
+    OTHER(""),
+    ABOVE_MAX("Amount is above this project's maximum"),
+    USER_LIMIT("Amount exceeds this project's limit per user");
+
+    private final String prefix;
+
+    RejectReason(String prefix) { this.prefix = prefix; }
+
+    public int bit() { return 1 << ordinal(); }
+
+    public static RejectReason of(String message) {
+        for (RejectReason r : values()) {
+            if (r != OTHER && message.startsWith(r.prefix)) return r;
+        }
+        return OTHER;
+    }
+
+    public static int maskOf(List<String> messages) {
+        int mask = 0;
+        for (String m : messages) mask |= of(m).bit();
+        return mask;
+    }
+
+    public static List<RejectReason> decode(int mask) {
+        List<RejectReason> out = new ArrayList<>();
+        for (RejectReason r : values()) {
+            if ((mask & r.bit()) != 0) out.add(r);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import java.util.Set;
+
+/**
+ *RepoEvent
+ *เหตุการณ์ที่ Repository ส่งให้ RepoListener หลัง publish snapshot ใหม่แล้ว
+ *(อ่าน snapshot ตอนได้ event จะเห็นค่าหลังเปลี่ยนเสมอ)
+ */
+public abstract class RepoEvent {
+
+    private final long version; //version ของ snapshot ที่มีการเปลี่ยนนี้แล้ว
+
+    RepoEvent(long version) { this.version = version; }
+
+    public long getVersion() { return version; }
+
+    /**raised ของโครงการเปลี่ยน (pledge SUCCESS) */
+    public static final class ProjectRaisedChanged extends RepoEvent {
+        public final String projectId;
+        public final long raised;
+
+        ProjectRaisedChanged(long version, String projectId, long raised) {
+            super(version);
+            this.projectId = projectId;
+            this.raised = raised;
+        }
+    }
+
+    /**quota คงเหลือของ tier เปลี่ยน */
+    public static final class TierQuotaChanged extends RepoEvent {
+        public final String projectId;
+        public final String tierName;
+        public final int quota;
+
+        TierQuotaChanged(long version, String projectId, String tierName, int quota) {
+            super(version);
+            this.projectId = projectId;
+            this.tierName = tierName;
+            this.quota = quota;
+        }
+    }
+
+    /**มี pledge SUCCESS ใหม่ */
+    public static final class PledgeAdded extends RepoEvent {
+        public final Pledge pledge;
+
+        PledgeAdded(long version, Pledge pledge) {
+            super(version);
+            this.pledge = pledge;
+        }
+    }
+
+    /**โครงการถึง deadline แล้วถูกปิด (ไม่อยู่ใน getActiveProjects อีก tier ถูก freeze) */
+    public static final class ProjectClosed extends RepoEvent {
+        public final String projectId;
+
+        ProjectClosed(long version, String projectId) {
+            super(version);
+            this.projectId = projectId;
+        }
+    }
+
+    /**มี reject ถูกบันทึกลง RejectLog (ยอด REJECT ใน snapshot เปลี่ยน) */
+    public static final class RejectRecorded extends RepoEvent {
+        public final int count;
+
+        RejectRecorded(long version, int count) {
+            super(version);
+            this.count = count;
+        }
+    }
+
+    /**ชุด project/tier เปลี่ยนทั้งก้อน (upsert, archive, reconcile) ผู้ฟังควรโหลดใหม่ทั้งหมด */
+    public static final class CatalogChanged extends RepoEvent {
+        public final Set<String> projectIds; //โครงการที่เปลี่ยน (ว่าง = ไม่มีโครงการเปลี่ยน, null = ไม่รู้ อาจเปลี่ยนทุกตัว)
+
+        CatalogChanged(long version, Set<String> projectIds) {
+            super(version);
+            this.projectIds = projectIds;
+        }
+    }
+}
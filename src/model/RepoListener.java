@@ -0,0 +1,9 @@
+package model;
+
+/**
+ *ผู้ฟัง RepoEvent ถูกเรียกบน thread ของ writer ขณะยังถือ lock ของ Repository
+ *ห้ามทำงานหนักหรือเรียก mutation กลับเข้ามา ให้จดไว้แล้วไปทำต่อที่ thread ตัวเอง
+ */
+public interface RepoListener {
+    void onEvent(RepoEvent e);
+}
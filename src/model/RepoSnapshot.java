@@ -0,0 +1,176 @@
+package model;
+
+import java.util.*;
+
+/**
+ *RepoSnapshot
+ *มุมมองอ่านอย่างเดียวของ Repository ณ version หนึ่ง (แนว MVCC)
+ *writer สร้าง snapshot ใหม่แล้ว publish ผ่าน volatile ทีเดียว reader หยิบไปใช้ได้เลยไม่ต้องล็อก
+ *
+ *Project/RewardTier ข้างในเป็นสำเนาที่ไม่มีใครแก้แล้ว (ไม่ใช่ object ตัวเดียวกับที่ writer ใช้)
+ *ยอดนับ SUCCESS/REJECT กับยอดเงินรวมมาจาก version เดียวกัน จึงตรงกันเสมอ
+ *
+ *pledge 1 รายการเปลี่ยนแค่ project เดียว -> withPledge copy array อ้างอิง (O(จำนวน project))
+ *แต่สร้างสำเนาใหม่เฉพาะ project/tier ที่เปลี่ยน
+ *การ copy ทั้ง array ยอมรับได้: เป็นแค่ copy pointer ต่อเนื่อง (โครงการหลักพัน ~ไมโครวินาที) และ addPledge เดียวกัน
+ *เขียน projects.csv ใหม่ทั้งไฟล์อยู่แล้ว (O(จำนวน project) เป็น I/O) งานที่มีหลาย pledge ใช้ inBatch/addPledges ซึ่ง publish ครั้งเดียว
+ */
+public final class RepoSnapshot {
+
+    private final long version;
+    private final Project[] projects;               //ตามลำดับเดียวกับ Repository
+    private final Map<String, Integer> position;    //projectId -> index (ใช้ร่วมกันได้ถ้าชุด project ไม่เปลี่ยน)
+    private final int[] active;                     //index ของ project ที่ยังไม่ปิด (pledge ไม่เปลี่ยนสถานะนี้)
+    private final List<RewardTier>[] tiers;         //tier ของ projects[i]
+    private final long[] statusCounts;
+    private final long totalRaised;
+    private final CategoryFacets facets;            //ยอดต่อหมวด + index ของโครงการที่เปิดในแต่ละหมวด
+
+    private RepoSnapshot(long version, Project[] projects, Map<String, Integer> position, int[] active,
+                         List<RewardTier>[] tiers, long[] statusCounts, long totalRaised, CategoryFacets facets) {
+        this.version = version;
+        this.projects = projects;
+        this.position = position;
+        this.active = active;
+        this.tiers = tiers;
+        this.statusCounts = statusCounts;
+        this.totalRaised = totalRaised;
+        this.facets = facets;
+    }
+
+    /**สร้างใหม่ทั้งชุดจาก state ของ writer (ใช้หลัง load/upsert/archive/reconcile) */
+    static RepoSnapshot build(long version, Collection<Project> live, Map<String, List<RewardTier>> liveTiers,
+                              long[] statusCounts) {
+        int n = live.size();
+        Project[] arr = new Project[n];
+        List<RewardTier>[] tierArr = newTierArray(n);
+        Map<String, Integer> pos = new HashMap<>(n * 2);
+        int[] act = new int[n];
+        int nActive = 0;
+        long total = 0;
+        int i = 0;
+        for (Project p : live) {
+            arr[i] = freeze(p);
+            tierArr[i] = freeze(liveTiers.get(p.getId()));
+            pos.put(p.getId(), i);
+            if (!p.isClosed()) act[nActive++] = i;
+            total += arr[i].getRaisedSatang();
+            i++;
+        }
+        return new RepoSnapshot(version, arr, Collections.unmodifiableMap(pos), Arrays.copyOf(act, nActive),
+                tierArr, statusCounts.clone(), total, CategoryFacets.build(arr));
+    }
+
+    /**version ถัดไปหลังเพิ่ม pledge: เปลี่ยนเฉพาะ project ของ pledge (ถ้า SUCCESS) กับยอดนับ */
+    RepoSnapshot withPledge(long version, Pledge p, Project liveProject, List<RewardTier> liveTiers,
+                            long[] statusCounts) {
+        Integer idx = position.get(p.getProjectId());
+        if (p.getStatus() != PledgeStatus.SUCCESS || idx == null || liveProject == null) {
+            return new RepoSnapshot(version, projects, position, active, tiers, statusCounts.clone(), totalRaised,
+                    facets);
+        }
+        Project[] arr = projects.clone();
+        List<RewardTier>[] tierArr = tiers.clone();
+        Project frozen = freeze(liveProject);
+        long delta = frozen.getRaisedSatang() - arr[idx].getRaisedSatang();
+        arr[idx] = frozen;
+        if (p.getTierName() != null) tierArr[idx] = freeze(liveTiers);
+        return new RepoSnapshot(version, arr, position, active, tierArr, statusCounts.clone(), totalRaised + delta,
+                facets.withRaised(frozen.getCategory(), delta));
+    }
+
+    /**version ถัดไปที่เปลี่ยนแค่ยอดนับ (reject) */
+    RepoSnapshot withCounts(long version, long[] statusCounts) {
+        return new RepoSnapshot(version, projects, position, active, tiers, statusCounts.clone(), totalRaised, facets);
+    }
+
+    //Java สร้าง array ของ generic ตรงๆ ไม่ได้ สร้างเป็น List<?>[] แล้ว cast (ใส่แค่ List<RewardTier>)
+    @SuppressWarnings("unchecked")
+    private static List<RewardTier>[] newTierArray(int n) {
+        return (List<RewardTier>[]) new List<?>[n];
+    }
+
+    private static Project freeze(Project p) {
+        Project c = new Project(p.getId(), p.getName(), p.getGoalSatang(), p.getDeadline(), p.getCategory());
+        c.addRaised(p.getRaisedSatang());
+        c.setClosed(p.isClosed());
+        return c;
+    }
+
+    private static List<RewardTier> freeze(List<RewardTier> live) {
+        if (live == null || live.isEmpty()) return List.of();
+        List<RewardTier> out = new ArrayList<>(live.size());
+        for (RewardTier t : live) {
+            RewardTier c = new RewardTier(t.getProjectId(), t.getTierName(), t.getMinAmountSatang(),
+                    t.getQuota(), t.getCapacity());
+            c.setFrozen(t.isFrozen());
+            out.add(c);
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    //---------- reads ----------
+
+    public long getVersion() { return version; }
+
+    public List<Project> getProjects() {
+        return Collections.unmodifiableList(Arrays.asList(projects));
+    }
+
+    /**เฉพาะโครงการที่ยังรับ pledge ได้ (ไม่รวมที่ DeadlineWheel ปิดไปแล้ว) */
+    public List<Project> getActiveProjects() {
+        List<Project> out = new ArrayList<>(active.length);
+        for (int i : active) out.add(projects[i]);
+        return Collections.unmodifiableList(out);
+    }
+
+    /**โครงการที่ยังเปิดในหมวดที่ชื่อมี category อยู่ (ไม่สนตัวพิมพ์) ใช้ index ของหมวด ไม่ไล่ทุกโครงการ */
+    public List<Project> getActiveProjects(String category) {
+        int[] idx = facets.activeIndices(category);
+        List<Project> out = new ArrayList<>(idx.length);
+        for (int i : idx) out.add(projects[i]);
+        return out;
+    }
+
+    /**ยอดรวมต่อหมวดหมู่ เรียงตามชื่อ (O(จำนวนหมวด)) */
+    public List<CategoryFacets.Facet> getCategoryFacets() {
+        return facets.facets();
+    }
+
+    public Optional<Project> getProject(String projectId) {
+        Integer idx = position.get(projectId);
+        return idx == null ? Optional.empty() : Optional.of(projects[idx]);
+    }
+
+    public List<RewardTier> getRewardTiers(String projectId) {
+        Integer idx = position.get(projectId);
+        return idx == null ? List.of() : tiers[idx];
+    }
+
+    //แบบไม่ห่อ Optional/ไม่สร้าง iterator ให้ PledgeRules ใช้บนทางที่ผ่าน
+    Project project(String projectId) {
+        Integer idx = position.get(projectId);
+        return idx == null ? null : projects[idx];
+    }
+
+    RewardTier tier(String projectId, String tierName) {
+        Integer idx = position.get(projectId);
+        if (idx == null) return null;
+        List<RewardTier> list = tiers[idx];
+        for (int i = 0; i < list.size(); i++) {
+            if (SymbolTable.same(list.get(i).getTierName(), tierName)) return list.get(i);
+        }
+        return null;
+    }
+
+    public long countByStatus(PledgeStatus status) { return statusCounts[status.ordinal()]; }
+
+    public long getPledgeCount() {
+        long n = 0;
+        for (long c : statusCounts) n += c;
+        return n;
+    }
+
+    /**ยอด raised รวมทุกโครงการ (= ผลรวม amount ของ pledge SUCCESS เมื่อ reconcile ตรงกัน) */
+    public long getTotalRaisedSatang() { return totalRaised; }
+}
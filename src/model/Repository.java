@@ -1,301 +1,1255 @@
-package model;
-
-import java.io.*;
-import java.nio.file.*;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.*;
-
-/**
- *Repository 
- *เก็บ cache ในmem ทำ Map/List
- *โหลด/บันทึกจาก CSV ในโฟลเดอร์ resources
- *
- *CSV Format หัวตาราง
- *projects.csv     : projectId,name,goal,deadline,category,raised
- *reward_tiers.csv : projectId,tierName,minAmount,quota
- *pledges.csv      : pledgeId,userId,projectId,amount,tierName,status,createdAt
- *users.csv        : userId,username,displayName,password
- */
-public class Repository {
-
-    //==== stores ใน mem ====
-    private final Map<String, Project> projects = new LinkedHashMap<>();
-    private final Map<String, List<RewardTier>> rewardByProject = new HashMap<>();
-    private final Map<String, Pledge> pledges = new LinkedHashMap<>();
-    private final Map<String, User> users = new LinkedHashMap<>();
-
-    //==== CSV paths ====
-    private final Path dir = Paths.get("resources");
-    private final Path fProjects = dir.resolve("projects.csv");
-    private final Path fRewards  = dir.resolve("reward_tiers.csv");
-    private final Path fPledges  = dir.resolve("pledges.csv");
-    private final Path fUsers    = dir.resolve("users.csv");
-
-    public Repository() {
-        loadAll();
-    }
-
-    //---------- query (เรียกจาก Controller) ----------
-
-    public Collection<Project> listProjects() {
-        return new ArrayList<>(projects.values());
-    }
-
-    public Optional<Project> getProject(String projectId) {
-        return Optional.ofNullable(projects.get(projectId));
-    }
-
-    public List<RewardTier> listRewardTiers(String projectId) {
-        return new ArrayList<>(rewardByProject.getOrDefault(projectId, List.of()));
-    }
-
-    public Optional<RewardTier> getRewardTier(String projectId, String tierName) {
-        return listRewardTiers(projectId).stream()
-                .filter(t -> t.getTierName().equals(tierName))
-                .findFirst();
-    }
-
-    public Collection<Pledge> listPledges() {
-        return new ArrayList<>(pledges.values());
-    }
-
-    public long countPledgeByStatus(PledgeStatus status) {
-        return pledges.values().stream().filter(p -> p.getStatus() == status).count();
-    }
-
-    public Optional<User> findUserByUsername(String username) {
-        return users.values().stream().filter(u -> u.getUsername().equals(username)).findFirst();
-    }
-
-    //---------- Mutations ----------
-
-    /**เพิ่ม/อัพเดต Project (ใช้ตอน seed หรือตอนจะ edit) */
-    public void upsertProject(Project p) {
-        projects.put(p.getId(), p);
-        saveProjects();
-    }
-
-    /**เพิ่ม/อัพเดต RewardTier (เป็น unique ต่อตัว projectId + tierName)*/
-    public void upsertRewardTier(RewardTier t) {
-        var list = new ArrayList<>(rewardByProject.getOrDefault(t.getProjectId(), new ArrayList<>()));
-        // แทนที่ของเดิมถ้าชื่อซ้ำ
-        list.removeIf(x -> x.getTierName().equals(t.getTierName()));
-        list.add(t);
-        rewardByProject.put(t.getProjectId(), list);
-        saveRewardTiers();
-    }
-
-    /**เพิ่มผู้ใช้ */
-    public void upsertUser(User u) {
-        users.put(u.getUserId(), u);
-        saveUsers();
-    }
-
-    /**
-     * บันทึก pledge 1 รายการ (ควรถูกตรวจแล้วใน Controller/Service)
-     *ถ้า SUCCESS ก็เพิ่ม raised ของ project และลดquotaของ tier
-     *บันทึกลง CSV
-     */
-    public void addPledge(Pledge p) {
-        pledges.put(p.getPledgeId(), p);
-        if (p.getStatus() == PledgeStatus.SUCCESS) {
-
-            //เพิ่มยอด project
-            var proj = projects.get(p.getProjectId());
-            if (proj != null) proj.addRaised(p.getAmount());
-
-            //ลด quota tier (ถ้ามี)
-            
-            if (p.getTierName() != null) {
-                getRewardTier(p.getProjectId(), p.getTierName()).ifPresent(RewardTier::consumeOneQuota);
-            }
-            saveProjects();
-            saveRewardTiers();
-        }
-        savePledges();
-    }
-
-    //---------- Load / Save ----------
-
-    private void loadAll() {
-        try { Files.createDirectories(dir); } catch (IOException ignored) {}
-
-        loadProjects();
-        loadRewardTiers();
-        loadUsers();
-        loadPledges(); //หลัง projects/rewards/users แล้ว จะได้อ้างอิงได้
-    }
-
-    private void loadProjects() {
-        projects.clear();
-        if (!Files.exists(fProjects)) { saveProjects(); return; }
-        try (var br = Files.newBufferedReader(fProjects)) {
-            String line; boolean skipHeader = true;
-            while ((line = br.readLine()) != null) {
-                if (skipHeader && line.startsWith("projectId")) { skipHeader = false; continue; }
-                if (line.isBlank()) continue;
-                String[] parts = splitCsv(line, 6);
-                String id = parts[0];
-                String name = parts[1];
-                double goal = parseDouble(parts[2]);
-                LocalDate deadline = LocalDate.parse(parts[3]);
-                String category = parts[4];
-                double raised = parseDouble(parts[5]);
-
-                Project p = new Project(id, name, goal, deadline, category);
-                //override raised จากไฟล์
-                if (raised > 0) p.addRaised(raised);
-                projects.put(id, p);
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void saveProjects() {
-        try (var bw = Files.newBufferedWriter(fProjects)) {
-            bw.write("projectId,name,goal,deadline,category,raised");
-            bw.newLine();
-            for (Project p : projects.values()) {
-                bw.write(String.join(",",
-                        p.getId(),
-                        esc(p.getName()),
-                        String.valueOf(p.getGoal()),
-                        p.getDeadline().toString(),
-                        esc(p.getCategory()),
-                        String.valueOf(p.getRaised())
-                ));
-                bw.newLine();
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void loadRewardTiers() {
-        rewardByProject.clear();
-        if (!Files.exists(fRewards)) { saveRewardTiers(); return; }
-        try (var br = Files.newBufferedReader(fRewards)) {
-            String line; boolean skipHeader = true;
-            while ((line = br.readLine()) != null) {
-                if (skipHeader && line.startsWith("projectId")) { skipHeader = false; continue; }
-                if (line.isBlank()) continue;
-                String[] parts = splitCsv(line, 4);
-                RewardTier t = new RewardTier(
-                        parts[0], parts[1], parseDouble(parts[2]), Integer.parseInt(parts[3]));
-                upsertRewardTier(t); 
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void saveRewardTiers() {
-        try (var bw = Files.newBufferedWriter(fRewards)) {
-            bw.write("projectId,tierName,minAmount,quota");
-            bw.newLine();
-            for (var entry : rewardByProject.entrySet()) {
-                for (var t : entry.getValue()) {
-                    bw.write(String.join(",",
-                            t.getProjectId(),
-                            esc(t.getTierName()),
-                            String.valueOf(t.getMinAmount()),
-                            String.valueOf(t.getQuota())
-                    ));
-                    bw.newLine();
-                }
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void loadUsers() {
-        users.clear();
-        if (!Files.exists(fUsers)) { saveUsers(); return; }
-        try (var br = Files.newBufferedReader(fUsers)) {
-            String line; boolean skipHeader = true;
-            while ((line = br.readLine()) != null) {
-                if (skipHeader && line.startsWith("userId")) { skipHeader = false; continue; }
-                if (line.isBlank()) continue;
-                String[] parts = splitCsv(line, 4);
-                var u = new User(parts[0], parts[1], parts[2], parts[3]);
-                users.put(u.getUserId(), u);
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void saveUsers() {
-        try (var bw = Files.newBufferedWriter(fUsers)) {
-            bw.write("userId,username,displayName,password");
-            bw.newLine();
-            for (User u : users.values()) {
-                bw.write(String.join(",",
-                        u.getUserId(),
-                        esc(u.getUsername()),
-                        esc(u.getDisplayName()),
-                        esc(u.getPassword())
-                ));
-                bw.newLine();
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void loadPledges() {
-        pledges.clear();
-        if (!Files.exists(fPledges)) { savePledges(); return; }
-        try (var br = Files.newBufferedReader(fPledges)) {
-            String line; boolean skipHeader = true;
-            while ((line = br.readLine()) != null) {
-                if (skipHeader && line.startsWith("pledgeId")) { skipHeader = false; continue; }
-                if (line.isBlank()) continue;
-                String[] parts = splitCsv(line, 7);
-                Pledge p = new Pledge(
-                        parts[0], parts[1], parts[2], parseDouble(parts[3]),
-                        emptyToNull(parts[4]),
-                        PledgeStatus.valueOf(parts[5]),
-                        LocalDateTime.parse(parts[6])
-                );
-                pledges.put(p.getPledgeId(), p);
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    private void savePledges() {
-        try (var bw = Files.newBufferedWriter(fPledges)) {
-            bw.write("pledgeId,userId,projectId,amount,tierName,status,createdAt");
-            bw.newLine();
-            for (Pledge p : pledges.values()) {
-                bw.write(String.join(",",
-                        p.getPledgeId(),
-                        p.getUserId(),
-                        p.getProjectId(),
-                        String.valueOf(p.getAmount()),
-                        nullToEmpty(p.getTierName()),
-                        p.getStatus().name(),
-                        p.getCreatedAt().toString()
-                ));
-                bw.newLine();
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-    }
-
-    //---------- Helpers ----------
-    private static String[] splitCsv(String line, int expect) {
-        //ใช้split
-        String[] arr = line.split(",", -1);
-        if (arr.length < expect) {
-            //เติมช่องว่างให้ครบ
-            String[] pad = new String[expect];
-            Arrays.fill(pad, "");
-            System.arraycopy(arr, 0, pad, 0, arr.length);
-            return pad;
-        }
-        return arr;
-    }
-
-    private static double parseDouble(String s) {
-        try { return Double.parseDouble(s); } catch (Exception e) { return 0.0d; }
-    }
-
-    private static String esc(String s) {
-        if (s == null) return "";
-        return s.replace(",", " "); //กัน ,
-    }
-
-    private static String nullToEmpty(String s) { return (s == null) ? "" : s; }
-    private static String emptyToNull(String s) { return (s == null || s.isBlank()) ? null : s; }
-}
+package model;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ *Repository 
+ *เก็บ cache ในmem ทำ Map/List
+ *โหลด/บันทึกจาก CSV ในโฟลเดอร์ resources
+ *
+ *CSV Format หัวตาราง
+ *projects.csv     : projectId,name,goal,deadline,category,raised
+ *reward_tiers.csv : projectId,tierName,minAmount,quota,capacity
+ *pledges.csv      : pledgeId,userId,projectId,amount,tierName,status,createdAt
+ *users.csv        : userId,username,displayName,password
+ *
+ *pledges.csv เป็น append-only (addPledge ต่อท้ายทีละบรรทัด)
+ *PledgeLoadMode.LAZY: ไม่โหลด pledge เก่าเข้า mem เก็บแค่ aggregate (นับตาม status, เลข id สูงสุด)
+ *กับ index offset ต่อ project แล้วค่อยโหลด pledge ของ project นั้นตอนถูกขอ (cache จำกัดขนาด)
+ *index + aggregate ถูก checkpoint ลง pledges.idx (ดู PledgeIndex) boot ถัดไป scan แค่บรรทัดที่ต่อท้ายหลังจากนั้น
+ *
+ *archiveClosedProjects ย้าย pledge ของโครงการที่เลย deadline ไปไว้ใน resources/archive (ดู PledgeArchive)
+ *ยอดนับ/เลข id สูงสุดยังรวมส่วนที่ archive แล้ว ส่วน listPledges* คืนเฉพาะ pledge ที่ยัง live
+ *
+ *DeadlineWheel ปิดโครงการที่ถึง deadline (closeExpired ถูกเรียกตอน load และทุกเที่ยงคืนจาก DeadlineScheduler)
+ *โครงการที่ปิดแล้วหลุดจาก listActiveProjects และ tier ถูก freeze สถานะนี้คำนวณจาก deadline ไม่ได้เก็บลงไฟล์
+ *
+ *pledge ที่ไม่ผ่านไม่อยู่ใน pledges/pledges.csv แต่ลง RejectLog (resources/rejects) เป็น reason code
+ *ยอด REJECT = total ของ RejectLog + แถว REJECT รุ่นเก่าที่ยังค้างใน pledges.csv/archive
+ *
+ *Concurrency: mutation ทุกตัว synchronized และ publish RepoSnapshot ใหม่ตอนจบ
+ *query ของ project/tier/ยอดนับอ่านจาก snapshot ล่าสุด (volatile) ไม่ต้องรอ writer
+ *หลัง publish จะส่ง RepoEvent ให้ RepoListener ที่ subscribe ไว้
+ *
+ *inBatch(work): งานหลาย mutation ติดกัน (seed, นำเข้าเป็นชุด) เลื่อนการเขียนไฟล์ไปทำครั้งเดียวตอนจบ
+ */
+public class Repository {
+
+    public enum PledgeLoadMode { EAGER, LAZY }
+
+    /**ไฟล์ที่ reload ได้ระหว่างรัน (ดู reloadProjects/reloadRewardTiers) */
+    public static final String PROJECTS_CSV = "projects.csv";
+    public static final String REWARD_TIERS_CSV = "reward_tiers.csv";
+
+    //==== stores ใน mem ====
+    private final Map<String, Project> projects = new LinkedHashMap<>();
+    private final Map<String, List<RewardTier>> rewardByProject = new HashMap<>();
+    private final Map<String, Pledge> pledges = new LinkedHashMap<>(); //ใช้เฉพาะ EAGER
+    private final Map<String, User> users = new LinkedHashMap<>();
+
+    //==== dictionary กลางของ id/category/tierName ====
+    private final SymbolTable symbols = new SymbolTable();
+
+    //==== pledge aggregates (ทั้งสองโหมด) ====
+    private final PledgeLoadMode pledgeMode;
+    private final long[] statusCounts = new long[PledgeStatus.values().length];
+    private int pledgeSeq; //เลข id สูงสุดที่เคยใช้ (high-water mark)
+
+    //==== LAZY: offset ของแต่ละบรรทัดใน pledges.csv แยกตาม project + cache list ที่โหลดแล้ว ====
+    //offset ที่ checkpoint แล้วอยู่ใน pledges.idx ใน mem มีแค่ของบรรทัดที่ต่อท้ายหลัง checkpoint
+    private final PledgeIndex indexFile;
+    private final Map<String, OffsetList> pledgeIndex = new HashMap<>();
+    private final long[] liveCounts = new long[PledgeStatus.values().length]; //เฉพาะแถวใน pledges.csv
+    private final Map<String, List<Pledge>> pledgeCache;
+    private static final int STREAM_CHUNK = 1024;
+
+    //==== CSV paths ====
+    private final Path dir;
+    private final Path fProjects;
+    private final Path fRewards;
+    private final Path fPledges;
+    private final Path fUsers;
+    private final Path fRules;
+
+    //==== pledge ของโครงการที่ปิดแล้ว ====
+    private final PledgeArchive archive;
+
+    //==== deadline ของโครงการที่ยังเปิด ====
+    private DeadlineWheel deadlines;
+
+    //==== ยอดตามช่วงเวลา (นาที/ชั่วโมง/วัน) ====
+    private final FundingRollup rollup = new FundingRollup();
+
+    //==== idempotency key ที่เพิ่งใช้ (retry ได้ผลเดิม) ====
+    private final RequestIndex requests = new RequestIndex();
+
+    //กฎตรวจ pledge ที่ compile แล้ว + ยอดต่อ user ของโครงการที่จำกัดไว้
+    private final PledgeRules pledgeRules = new PledgeRules();
+
+    //==== pledge ที่ไม่ผ่าน ====
+    private final RejectLog rejectLog;
+
+    //mtime+size ของไฟล์ตอนที่เราอ่าน/เขียนเองล่าสุด ถ้าบนดิสก์ไม่ตรงแปลว่ามีคนแก้จากข้างนอก
+    private final Map<Path, String> ownStamp = new ConcurrentHashMap<>();
+
+    //==== read snapshot ล่าสุด ====
+    private volatile RepoSnapshot snapshot;
+    private long version;
+
+    //==== batch: เลื่อนการ save ไปตอนจบ inBatch ชั้นนอกสุด ====
+    private int batchDepth;
+    private boolean projectsDirty, tiersDirty, usersDirty;
+    private final List<Pledge> pendingPledges = new ArrayList<>();
+    private final List<RejectLog.Entry> pendingRejects = new ArrayList<>();
+
+    //==== change events ====
+    private final List<RepoListener> listeners = new CopyOnWriteArrayList<>();
+
+    public Repository() {
+        this(PledgeLoadMode.EAGER, 0);
+    }
+
+    /**@param cachedProjects จำนวน project ที่เก็บ pledge list ไว้ใน cache (ใช้กับ LAZY) */
+    public Repository(PledgeLoadMode pledgeMode, int cachedProjects) {
+        this(Paths.get("resources"), pledgeMode, cachedProjects);
+    }
+
+    /**ใช้ข้อมูลจากโฟลเดอร์อื่น (เช่น StressHarness ที่ไม่ควรแตะ resources จริง) */
+    public Repository(Path dir, PledgeLoadMode pledgeMode, int cachedProjects) {
+        this.dir = dir;
+        this.fProjects = dir.resolve(PROJECTS_CSV);
+        this.fRewards = dir.resolve(REWARD_TIERS_CSV);
+        this.fPledges = dir.resolve("pledges.csv");
+        this.fUsers = dir.resolve("users.csv");
+        this.fRules = dir.resolve(PledgeRules.FILE);
+        this.archive = new PledgeArchive(dir.resolve("archive"));
+        this.rejectLog = new RejectLog(dir.resolve("rejects"));
+        this.indexFile = new PledgeIndex(dir.resolve("pledges.idx"));
+        this.pledgeMode = pledgeMode;
+        int cap = Math.max(1, cachedProjects);
+        this.pledgeCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Pledge>> eldest) {
+                return size() > cap;
+            }
+        };
+        loadAll();
+    }
+
+    /**SymbolTable ที่ loader ทุกตัวใช้ร่วมกัน (Controller ใช้ intern input ก่อนสร้าง Pledge) */
+    public SymbolTable symbols() { return symbols; }
+
+    /**ตั้ง retention/sampling หรือไล่อ่าน reject ที่เก็บไว้ */
+    public RejectLog rejectLog() { return rejectLog; }
+
+    /**ยอด pledge/THB ต่อนาที/ชั่วโมง/วัน (อัปเดตทุก addPledge ไม่ต้อง scan) */
+    public FundingRollup rollup() { return rollup; }
+
+    /**กฎตรวจ pledge ต่อโครงการ (ตั้งจาก pledge_rules.csv) */
+    public PledgeRules pledgeRules() { return pledgeRules; }
+
+    /**โฟลเดอร์ไฟล์ข้อมูล (ResourceWatcher เฝ้าที่นี่) */
+    public Path dataDir() { return dir; }
+
+    //---------- query (เรียกจาก Controller) ----------
+
+    public void subscribe(RepoListener l) { listeners.add(l); }
+    public void unsubscribe(RepoListener l) { listeners.remove(l); }
+
+    /**view ที่สอดคล้องกันทั้งชุด ณ version ล่าสุด (ไม่ล็อก) */
+    public RepoSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public Collection<Project> listProjects() {
+        return snapshot.getProjects();
+    }
+
+    /**เฉพาะโครงการที่ยังไม่ถึง deadline */
+    public Collection<Project> listActiveProjects() {
+        return snapshot.getActiveProjects();
+    }
+
+    public Optional<Project> getProject(String projectId) {
+        return snapshot.getProject(projectId);
+    }
+
+    /**ยอดรวมต่อหมวดหมู่ เรียงตามชื่อ (อ่านจาก snapshot ไม่ต้องรอ writer) */
+    public List<CategoryFacets.Facet> categoryFacets() {
+        return snapshot.getCategoryFacets();
+    }
+
+    /**โครงการที่ยังเปิดในหมวดที่ชื่อมี category อยู่ (ไม่สนตัวพิมพ์) จาก index ของหมวดใน snapshot */
+    public List<Project> listActiveProjects(String category) {
+        return snapshot.getActiveProjects(category);
+    }
+
+    public List<RewardTier> listRewardTiers(String projectId) {
+        return snapshot.getRewardTiers(projectId);
+    }
+
+    public Optional<RewardTier> getRewardTier(String projectId, String tierName) {
+        return Optional.ofNullable(findTier(snapshot.getRewardTiers(projectId), tierName));
+    }
+
+    //ไม่ copy list ทิ้ง เทียบชื่อแบบ identity ก่อน (ชื่อที่โหลดมาผ่าน intern แล้ว)
+    private static RewardTier findTier(List<RewardTier> tiers, String tierName) {
+        if (tiers == null) return null;
+        for (RewardTier t : tiers) {
+            if (SymbolTable.same(t.getTierName(), tierName)) return t;
+        }
+        return null;
+    }
+
+    /**pledge ทั้งหมด (LAZY จะอ่านจากไฟล์ทั้งไฟล์ ใช้เท่าที่จำเป็น) */
+    public synchronized Collection<Pledge> listPledges() {
+        if (pledgeMode == PledgeLoadMode.EAGER) return new ArrayList<>(pledges.values());
+        List<Pledge> all = new ArrayList<>();
+        try {
+            PledgeFile.scan(fPledges, (off, line) -> all.add(PledgeFile.parse(line, symbols)));
+        } catch (IOException e) { e.printStackTrace(); }
+        return all;
+    }
+
+    /**pledge ของ project เดียว (LAZY โหลดจาก index ครั้งแรกแล้ว cache ไว้) */
+    public synchronized List<Pledge> listPledgesByProject(String projectId) {
+        if (pledgeMode == PledgeLoadMode.EAGER) {
+            List<Pledge> out = new ArrayList<>();
+            for (Pledge p : pledges.values()) {
+                if (SymbolTable.same(p.getProjectId(), projectId)) out.add(p);
+            }
+            return out;
+        }
+        return new ArrayList<>(loadProjectPledges(projectId));
+    }
+
+    /**
+     *ไล่ pledge ทีละรายการโดยไม่ copy เป็น list (ใช้กับ export/report ขนาดใหญ่)
+     *projectId = null คือทุกโครงการ, includeArchived รวม segment ใน archive ด้วย
+     *EAGER copy ref ของรายการที่ตรงใต้ lock แล้วส่งให้ sink นอก lock (sink เขียนไฟล์ได้โดยไม่ขวาง writer)
+     *LAZY แบบระบุ project ถือ lock แค่ตอน copy offset
+     */
+    public void forEachPledge(String projectId, boolean includeArchived, Consumer<Pledge> sink) throws IOException {
+        if (includeArchived) archive.forEach(projectId, symbols, sink);
+        if (pledgeMode == PledgeLoadMode.EAGER) {
+            List<Pledge> matched = new ArrayList<>();
+            synchronized (this) {
+                for (Pledge p : pledges.values()) {
+                    if (projectId == null || SymbolTable.same(p.getProjectId(), projectId)) matched.add(p);
+                }
+            }
+            for (Pledge p : matched) sink.accept(p);
+        } else if (projectId == null) {
+            PledgeFile.scan(fPledges, (off, line) -> sink.accept(PledgeFile.parse(line, symbols)));
+        } else {
+            long[] offsets;
+            synchronized (this) {
+                offsets = indexFile.offsets(projectId, pledgeIndex.get(projectId)); //copy: append/checkpoint ไม่กระทบ
+            }
+            int size = offsets.length;
+            //อ่านทีละก้อน memory คงที่ไม่ขึ้นกับจำนวน pledge ของโครงการ
+            for (int from = 0; from < size; from += STREAM_CHUNK) {
+                int to = Math.min(size, from + STREAM_CHUNK);
+                for (String line : PledgeFile.readLinesAt(fPledges, offsets, from, to)) {
+                    sink.accept(PledgeFile.parse(line, symbols));
+                }
+            }
+        }
+    }
+
+    /**
+     *pledge ใน mem แยกตามโครงการที่ขอในรอบเดียว (ถือ lock แค่ตอนจัดกลุ่ม) ใช้กับ export ต่อโครงการ
+     *LAZY คืน null: ให้ใช้ forEachPledge ต่อโครงการซึ่งอ่านจาก index อยู่แล้ว
+     */
+    public Map<String, List<Pledge>> groupPledgesByProject(Collection<String> projectIds) {
+        if (pledgeMode != PledgeLoadMode.EAGER) return null;
+        Map<String, List<Pledge>> out = new HashMap<>();
+        for (String id : projectIds) out.put(id, new ArrayList<>());
+        synchronized (this) {
+            for (Pledge p : pledges.values()) {
+                List<Pledge> list = out.get(p.getProjectId());
+                if (list != null) list.add(p);
+            }
+        }
+        return out;
+    }
+
+    /**ไล่ pledge ที่ archive ไปแล้วของ project นี้ทีละรายการ (ไม่ต้องถือ lock ของ Repository) */
+    public void forEachArchivedPledge(String projectId, Consumer<Pledge> sink) throws IOException {
+        archive.forEach(projectId, symbols, sink);
+    }
+
+    /**pledge ที่ archive ไปแล้วของ project นี้ (เปิด segment ที่บีบอัดไว้ตอนเรียก) */
+    public List<Pledge> listArchivedPledges(String projectId) {
+        try {
+            return archive.read(projectId, symbols);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    public long countPledgeByStatus(PledgeStatus status) {
+        return snapshot.countByStatus(status);
+    }
+
+    public long pledgeCount() {
+        return snapshot.getPledgeCount();
+    }
+
+    /**จองเลข pledge ถัดไปจาก high-water mark (ไม่ต้องนับ pledge ทั้งหมด) */
+    public synchronized String nextPledgeId() {
+        return String.format("P%03d", ++pledgeSeq);
+    }
+
+    public PledgeLoadMode getPledgeLoadMode() { return pledgeMode; }
+
+    public synchronized Optional<User> findUserByUsername(String username) {
+        return users.values().stream().filter(u -> u.getUsername().equals(username)).findFirst();
+    }
+
+    /**userId ทั้งหมด ณ ตอนเรียก (สำเนา ใช้ตรวจแบบขนานได้โดยไม่ต้องล็อก) */
+    public synchronized Set<String> userIds() {
+        return new HashSet<>(users.keySet());
+    }
+
+    //---------- Mutations ----------
+
+    /**เพิ่ม/อัพเดต Project (ใช้ตอน seed หรือตอนจะ edit) */
+    public synchronized void upsertProject(Project p) {
+        symbols.intern(p.getCategory());
+        projects.put(symbols.intern(p.getId()), p);
+        schedule(p);
+        markProjectsDirty();
+        publishAll(Set.of(p.getId()));
+    }
+
+    /**เพิ่ม/อัพเดต RewardTier (เป็น unique ต่อตัว projectId + tierName)*/
+    public synchronized void upsertRewardTier(RewardTier t) {
+        symbols.intern(t.getTierName());
+        putRewardTier(t);
+        markTiersDirty();
+        publishAll(Set.of());
+    }
+
+    //แก้แค่ใน mem (loader ใช้ตัวนี้ จะได้ไม่เขียนไฟล์ทับระหว่างกำลังอ่าน)
+    private void putRewardTier(RewardTier t) {
+        var list = new ArrayList<>(rewardByProject.getOrDefault(t.getProjectId(), new ArrayList<>()));
+        // แทนที่ของเดิมถ้าชื่อซ้ำ
+        list.removeIf(x -> x.getTierName().equals(t.getTierName()));
+        Project owner = projects.get(t.getProjectId());
+        t.setFrozen(owner != null && owner.isClosed());
+        list.add(t);
+        rewardByProject.put(t.getProjectId(), list);
+    }
+
+    /**เพิ่มผู้ใช้ */
+    public synchronized void upsertUser(User u) {
+        users.put(symbols.intern(u.getUserId()), u);
+        if (batchDepth > 0) usersDirty = true; else saveUsers();
+    }
+
+    /**
+     * บันทึก pledge 1 รายการ (ควรถูกตรวจแล้วใน Controller/Service)
+     *ถ้า SUCCESS ก็เพิ่ม raised ของ project และลดquotaของ tier
+     *บันทึกลง CSV (REJECT ถูกส่งไป RejectLog โดยไม่มี reason ควรใช้ addReject แทน)
+     */
+    public synchronized void addPledge(Pledge p) {
+        if (p.getStatus() == PledgeStatus.REJECT) {
+            addReject(RejectLog.Entry.of(p, 0));
+            return;
+        }
+        if (pledgeMode == PledgeLoadMode.EAGER) pledges.put(p.getPledgeId(), p);
+        countPledge(p);
+        var proj = projects.get(p.getProjectId());
+        RewardTier tier = null;
+        if (p.getStatus() == PledgeStatus.SUCCESS) {
+
+            //เพิ่มยอด project
+            if (proj != null) proj.addRaised(p.getAmountSatang());
+            rollup.add(p);
+            pledgeRules.countSuccess(p);
+            rememberSuccess(p);
+
+            //ลด quota tier (ถ้ามี)
+            
+            if (p.getTierName() != null) {
+                tier = findTier(rewardByProject.get(p.getProjectId()), p.getTierName());
+                if (tier != null) tier.consumeOneQuota();
+            }
+            markProjectsDirty();
+            markTiersDirty();
+        }
+        if (batchDepth > 0) pendingPledges.add(p); else appendPledge(p);
+        snapshot = snapshot.withPledge(++version, p, proj, rewardByProject.get(p.getProjectId()), statusCounts);
+
+        fire(new RepoEvent.PledgeAdded(version, p));
+        if (proj != null && p.getStatus() == PledgeStatus.SUCCESS) {
+            fire(new RepoEvent.ProjectRaisedChanged(version, proj.getId(), proj.getRaisedSatang()));
+        }
+        if (tier != null) {
+            fire(new RepoEvent.TierQuotaChanged(version, tier.getProjectId(), tier.getTierName(), tier.getQuota()));
+        }
+    }
+
+    /**ผลเดิมของ idempotency key (hash จาก RequestIndex.hash) ถ้ายังอยู่ใน window */
+    public synchronized Optional<RequestIndex.Outcome> findRequest(long requestHash) {
+        return Optional.ofNullable(requests.get(requestHash, System.currentTimeMillis()));
+    }
+
+    /**
+     *addPledge ที่กันซ้ำด้วย requestHash: ถ้า key นี้เคยสำเร็จแล้วไม่บันทึกซ้ำ
+     *คืน pledgeId ที่มีผลจริง (ของเดิมถ้าซ้ำ)
+     *ตรวจซ้ำใต้ lock ว่าโครงการยังเปิดและ tier ยังมี quota (ผู้เรียกตรวจกับ snapshot ก่อนหน้า
+     *ระหว่างนั้น thread อื่นอาจใช้สิทธิ์สุดท้ายไปแล้ว) ไม่ผ่านคืน null โดยไม่บันทึกอะไร
+     */
+    public synchronized String addPledgeOnce(Pledge p) {
+        if (p.getRequestHash() != 0) {
+            RequestIndex.Outcome prev = requests.get(p.getRequestHash(), System.currentTimeMillis());
+            if (prev != null && prev.pledgeId != null) return prev.pledgeId;
+        }
+        Project proj = projects.get(p.getProjectId());
+        if (proj == null || proj.isClosed()) return null;
+        RewardTier tier = null;
+        if (p.getTierName() != null) {
+            tier = findTier(rewardByProject.get(p.getProjectId()), p.getTierName());
+            if (tier == null || !tier.hasQuota()) return null;
+        }
+        if (pledgeRules.checkExtras(proj, tier, p.getAmountSatang(), p.getUserId()) != 0) return null; //เช่นยอดต่อ user
+        addPledge(p);
+        return p.getPledgeId();
+    }
+
+    /**จำว่า key นี้ถูก reject ด้วย errors ชุดนี้ (mem อย่างเดียว) */
+    public synchronized void rememberReject(long requestHash, List<String> errors) {
+        if (requestHash != 0) requests.put(requestHash, null, List.copyOf(errors), System.currentTimeMillis());
+    }
+
+    /**
+     *ทำ work ทั้งก้อนภายใต้ lock เดียว mutation ข้างในยังอัปเดต mem/snapshot/event ตามปกติ
+     *แต่ไฟล์ CSV ถูกเขียนครั้งเดียวตอนจบ (pledge ใหม่ต่อท้ายด้วยการเขียนครั้งเดียว) ซ้อนกันได้
+     */
+    public synchronized void inBatch(Runnable work) {
+        batchDepth++;
+        try {
+            work.run();
+        } finally {
+            if (--batchDepth == 0) flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        if (projectsDirty) saveProjects();
+        if (tiersDirty) saveRewardTiers();
+        if (usersDirty) saveUsers();
+        projectsDirty = tiersDirty = usersDirty = false;
+        if (!pendingPledges.isEmpty()) {
+            appendPledges(pendingPledges);
+            pendingPledges.clear();
+        }
+        if (!pendingRejects.isEmpty()) {
+            rejectLog.append(pendingRejects);
+            pendingRejects.clear();
+        }
+    }
+
+    private void markProjectsDirty() { if (batchDepth > 0) projectsDirty = true; else saveProjects(); }
+    private void markTiersDirty() { if (batchDepth > 0) tiersDirty = true; else saveRewardTiers(); }
+
+    /**
+     *บันทึก pledge หลายรายการในครั้งเดียว (ผลเหมือน addPledge ทีละตัวตามลำดับ)
+     *เขียนไฟล์ครั้งเดียว publish snapshot ครั้งเดียว (CatalogChanged) แทนทีละ pledge
+     */
+    public synchronized void addPledges(List<Pledge> batch) {
+        if (batch.isEmpty()) return;
+        List<RejectLog.Entry> rejects = new ArrayList<>();
+        List<Pledge> accepted = new ArrayList<>(batch.size());
+        for (Pledge p : batch) {
+            if (p.getStatus() == PledgeStatus.REJECT) rejects.add(RejectLog.Entry.of(p, 0));
+            else accepted.add(p);
+        }
+        if (!rejects.isEmpty()) addRejects(rejects);
+        if (accepted.isEmpty()) return;
+        batch = accepted;
+
+        Set<String> raisedChanged = new HashSet<>();
+        for (Pledge p : batch) {
+            if (pledgeMode == PledgeLoadMode.EAGER) pledges.put(p.getPledgeId(), p);
+            countPledge(p);
+            if (p.getStatus() != PledgeStatus.SUCCESS) continue;
+            raisedChanged.add(p.getProjectId());
+            var proj = projects.get(p.getProjectId());
+            if (proj != null) proj.addRaised(p.getAmountSatang());
+            rollup.add(p);
+            pledgeRules.countSuccess(p);
+            rememberSuccess(p);
+            if (p.getTierName() != null) {
+                RewardTier tier = findTier(rewardByProject.get(p.getProjectId()), p.getTierName());
+                if (tier != null) tier.consumeOneQuota();
+            }
+        }
+        if (!raisedChanged.isEmpty()) {
+            markProjectsDirty();
+            markTiersDirty();
+        }
+        if (batchDepth > 0) pendingPledges.addAll(batch); else appendPledges(batch);
+        publishAll(raisedChanged);
+        for (Pledge p : batch) fire(new RepoEvent.PledgeAdded(version, p));
+    }
+
+    /**บันทึก pledge ที่ไม่ผ่าน: นับเข้ายอด REJECT แล้วต่อท้าย RejectLog (ไม่เข้า pledges.csv) */
+    public synchronized void addReject(RejectLog.Entry e) {
+        addRejects(List.of(e));
+    }
+
+    public synchronized void addRejects(List<RejectLog.Entry> entries) {
+        if (entries.isEmpty()) return;
+        statusCounts[PledgeStatus.REJECT.ordinal()] += entries.size();
+        if (batchDepth > 0) pendingRejects.addAll(entries); else rejectLog.append(entries);
+        snapshot = snapshot.withCounts(++version, statusCounts);
+        fire(new RepoEvent.RejectRecorded(version, entries.size()));
+    }
+
+    /**
+     *ปิดโครงการที่ deadline <= today: หลุดจาก active list, freeze tier, ส่ง ProjectClosed
+     *ไล่เฉพาะช่องของ DeadlineWheel ที่ถึงวันแล้ว ไม่ได้ไล่ทุกโครงการ คืนจำนวนที่ปิด
+     */
+    public synchronized int closeExpired(LocalDate today) {
+        List<String> closed = new ArrayList<>();
+        for (String id : deadlines.advance(today.toEpochDay())) {
+            Project p = projects.get(id);
+            //รายการค้างจาก deadline เดิมก่อน upsert
+            if (p == null || p.isClosed() || p.getDeadline().isAfter(today)) continue;
+            setClosed(p, true);
+            closed.add(id);
+        }
+        if (closed.isEmpty()) return 0;
+        publishAll(new HashSet<>(closed));
+        for (String id : closed) fire(new RepoEvent.ProjectClosed(version, id));
+        return closed.size();
+    }
+
+    //ลงตารางตาม deadline (ปิดทันทีถ้าเลยแล้วเทียบกับวันที่ wheel เดินถึง)
+    private void schedule(Project p) {
+        setClosed(p, false);
+        if (p.getDeadline() == null || !deadlines.schedule(p.getId(), p.getDeadline().toEpochDay())) {
+            setClosed(p, true);
+        }
+    }
+
+    private void setClosed(Project p, boolean closed) {
+        p.setClosed(closed);
+        for (RewardTier t : rewardByProject.getOrDefault(p.getId(), List.of())) t.setFrozen(closed);
+    }
+
+    private void rememberSuccess(Pledge p) {
+        if (p.getRequestHash() != 0) {
+            requests.put(p.getRequestHash(), p.getPledgeId(), List.of(), System.currentTimeMillis());
+        }
+    }
+
+    //สร้าง snapshot ใหม่ทั้งชุดจาก state ปัจจุบัน (เรียกภายใต้ lock)
+    private void publishAll() {
+        publishAll(null);
+    }
+
+    //changed = โครงการที่เปลี่ยน (null = ไม่รู้) ส่งต่อใน CatalogChanged ให้ผู้ฟังล้างเฉพาะส่วนได้
+    private void publishAll(Set<String> changed) {
+        snapshot = RepoSnapshot.build(++version, projects.values(), rewardByProject, statusCounts);
+        fire(new RepoEvent.CatalogChanged(version, changed));
+    }
+
+    private void fire(RepoEvent e) {
+        for (RepoListener l : listeners) {
+            try { l.onEvent(e); } catch (RuntimeException ex) { ex.printStackTrace(); }
+        }
+    }
+
+    /**
+     *lifecycle job: ย้าย pledge ของ project ที่ deadline ไม่เกิน today (รับ pledge ไม่ได้แล้ว)
+     *ออกจาก pledges.csv ไปเป็น segment ใน archive แล้วเขียนไฟล์ live ใหม่เหลือแต่โครงการที่ยังเปิด
+     *คืนจำนวน pledge ที่ย้าย
+     */
+    public synchronized int archiveClosedProjects(LocalDate today) {
+        Set<String> closed = new HashSet<>();
+        for (Project p : projects.values()) {
+            if (!p.getDeadline().isAfter(today)) closed.add(p.getId());
+        }
+        if (closed.isEmpty() || !Files.exists(fPledges)) return 0;
+
+        Map<String, List<Pledge>> moving = new LinkedHashMap<>();
+        Path tmp = dir.resolve("pledges.csv.tmp");
+        List<PledgeArchive.Segment> written = new ArrayList<>();
+        int moved = 0;
+        try {
+            //stream ไฟล์ live: ของที่ปิดแล้วเก็บไว้เขียน segment ที่เหลือเขียนลง tmp
+            writeLiveExcept(tmp, line -> {
+                String projectId = splitCsv(line, 7)[2];
+                if (!closed.contains(projectId)) return false;
+                moving.computeIfAbsent(projectId, k -> new ArrayList<>()).add(PledgeFile.parse(line, symbols));
+                return true;
+            });
+            if (moving.isEmpty()) { Files.deleteIfExists(tmp); return 0; }
+
+            //segment ก่อน (ยังไม่ลง index) แล้วสลับไฟล์ live ถ้าพังก่อนสลับ ยอดยังอยู่ที่ไฟล์ live ที่เดียว
+            for (var e : moving.entrySet()) {
+                written.add(archive.writeSegment(e.getKey(), e.getValue()));
+                moved += e.getValue().size();
+            }
+            indexFile.invalidate();
+            Files.move(tmp, fPledges, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            try { Files.deleteIfExists(tmp); } catch (IOException ignored) {}
+            archive.discard(written);
+            return 0;
+        }
+        try {
+            archive.commit(written);
+        } catch (IOException e) {
+            e.printStackTrace(); //segment ที่ยังไม่ลง index ถูกนับจากตัวไฟล์ตอน loadPledges ด้านล่าง
+        }
+        loadPledges(); //สร้าง map/index ใหม่จากไฟล์ที่เล็กลง (+ ยอดจาก archive index)
+        publishAll();
+        return moved;
+    }
+
+    //เขียนแถวของ pledges.csv ลง tmp ยกเว้นแถวที่ drop คืน true (ยังไม่สลับไฟล์)
+    private void writeLiveExcept(Path tmp, Predicate<String> drop) throws IOException {
+        try (var bw = Files.newBufferedWriter(tmp)) {
+            bw.write(PledgeFile.HEADER);
+            bw.newLine();
+            PledgeFile.scan(fPledges, (off, line) -> {
+                if (drop.test(line)) return;
+                try { bw.write(line); bw.newLine(); } catch (IOException e) { throw new UncheckedIOException(e); }
+            });
+        }
+    }
+
+    //แถวของไฟล์ live ที่อยู่ใน segment แล้ว (crash ระหว่าง archive ก่อนสลับไฟล์) เขียนไฟล์ใหม่โดยไม่มีแถวพวกนั้น
+    private boolean dropArchivedRows() {
+        Path tmp = dir.resolve("pledges.csv.tmp");
+        try {
+            writeLiveExcept(tmp, line -> {
+                String[] parts = splitCsv(line, 7);
+                return archive.covers(parts[2], PledgeFile.sequenceOf(parts[0]));
+            });
+            indexFile.invalidate();
+            Files.move(tmp, fPledges, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            try { Files.deleteIfExists(tmp); } catch (IOException ignored) {}
+            return false;
+        }
+    }
+
+    /**
+     *คำนวณ raised ต่อ project และ quota คงเหลือต่อ tier ใหม่จาก pledge (live + archive) แบบขนาน
+     *แล้วรายงานค่าที่ไม่ตรง ถ้า repair=true จะเขียนค่าที่คำนวณได้ทับแล้ว save
+     *tier จากไฟล์รุ่นเก่าที่ยังไม่มี capacity จะถูกตั้ง capacity = quota + ที่ใช้ไป (ไม่นับเป็น drift)
+     */
+    public synchronized ReconcileReport reconcile(boolean repair) {
+        long t0 = System.nanoTime();
+        ReconcileReport report = new ReconcileReport();
+        Reconciler.Totals totals;
+        try {
+            totals = new Reconciler(fPledges, archive, ForkJoinPool.commonPool()).compute();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return report;
+        }
+        report.setPledgesScanned(totals.pledges);
+
+        boolean projectsChanged = false, tiersChanged = false;
+        for (Project p : projects.values()) {
+            Reconciler.ProjectTotals t = totals.byProject.get(p.getId());
+            long computed = (t == null) ? 0 : t.raised;
+            if (computed != p.getRaisedSatang()) {
+                report.addDrift(new ReconcileReport.Drift(ReconcileReport.Kind.PROJECT_RAISED,
+                        p.getId(), null, p.getRaisedSatang(), computed));
+                if (repair) { p.resetRaised(computed); projectsChanged = true; }
+            }
+        }
+        for (List<RewardTier> list : rewardByProject.values()) {
+            for (RewardTier tier : list) {
+                Reconciler.ProjectTotals t = totals.byProject.get(tier.getProjectId());
+                int consumed = (t == null) ? 0 : t.consumed(tier.getTierName());
+                if (tier.getCapacity() < 0) {
+                    //tier รุ่นเก่าไม่มี capacity: เติมเฉพาะตอน repair ไม่งั้นแค่รายงาน (ไม่แตะ mem/ไฟล์)
+                    report.incTiersInitialized();
+                    if (repair) {
+                        tier.repair(tier.getQuota(), tier.getQuota() + consumed);
+                        tiersChanged = true;
+                    }
+                    continue;
+                }
+                int computed = Math.max(0, tier.getCapacity() - consumed);
+                if (computed != tier.getQuota()) {
+                    report.addDrift(new ReconcileReport.Drift(ReconcileReport.Kind.TIER_QUOTA,
+                            tier.getProjectId(), tier.getTierName(), tier.getQuota(), computed));
+                    if (repair) { tier.repair(computed, tier.getCapacity()); tiersChanged = true; }
+                }
+            }
+        }
+        if (projectsChanged) saveProjects();
+        if (tiersChanged) saveRewardTiers();
+        if (projectsChanged || tiersChanged) publishAll();
+        report.setRepaired(repair && (!report.isClean() || report.getTiersInitialized() > 0));
+        report.setElapsedMillis((System.nanoTime() - t0) / 1_000_000);
+        return report;
+    }
+
+    //---------- Hot reload ----------
+
+    /**
+     *อ่าน projects.csv ใหม่หลังมีคนแก้ไฟล์เอง แล้ว merge เฉพาะแถวที่ต่างจาก mem ในครั้งเดียว (snapshot ใหม่ 1 รุ่น)
+     *-แถวใหม่: เพิ่มโครงการ (raised ตามไฟล์)
+     *-แถวเดิม: รับ name/goal/deadline/category จากไฟล์ raised ใช้ค่าใน mem เสมอ (ไฟล์อาจเป็นสำเนาก่อน pledge ล่าสุด)
+     *  deadline เปลี่ยนก็ลง DeadlineWheel ใหม่ (ขยาย deadline ของโครงการที่ปิดแล้วจะเปิดกลับ)
+     *-แถวที่หายจากไฟล์: ไม่ลบ (มี pledge อ้างอยู่) จะถูกเขียนกลับตอน save
+     *ไฟล์ที่เราเขียนเองข้ามทันทีไม่ต้องอ่าน อ่านไม่ผ่านสักแถวก็ไม่ apply อะไรเลย คืนจำนวนแถวที่เปลี่ยน
+     */
+    public int reloadProjects() throws IOException {
+        if (!changedOnDisk(fProjects)) return 0;
+        String seen = ownStamp.get(fProjects);
+        List<Project> rows = readProjects(); //parse นอก lock
+        synchronized (this) {
+            //เราเขียนไฟล์ระหว่าง parse: save ได้ merge ของที่แก้จากข้างนอกไปแล้ว แถวที่อ่านมาอาจเก่ากว่า mem ทิ้งไป
+            if (!Objects.equals(seen, ownStamp.get(fProjects))) return 0;
+            int changed = mergeProjects(rows);
+            if (changed > 0) {
+                publishAll();
+                markProjectsDirty(); //เขียน raised ใน mem กลับ
+            }
+            stamp(fProjects);
+            return changed;
+        }
+    }
+
+    /**
+     *อ่าน reward_tiers.csv ใหม่แบบเดียวกับ reloadProjects
+     *-tier ใหม่: เพิ่มตามไฟล์
+     *-tier เดิม: รับ minAmount และ capacity จากไฟล์ quota ใน mem ขยับตามส่วนต่าง capacity
+     *  (เพิ่ม capacity 10 = quota เพิ่ม 10 โดยไม่ย้อนสิทธิ์ที่ถูกใช้ไประหว่างนั้น) ช่อง quota ในไฟล์ไม่ใช้
+     *-tier ที่หายจากไฟล์: ไม่ลบ
+     */
+    public int reloadRewardTiers() throws IOException {
+        if (!changedOnDisk(fRewards)) return 0;
+        String seen = ownStamp.get(fRewards);
+        List<RewardTier> rows = readRewardTiers();
+        synchronized (this) {
+            if (!Objects.equals(seen, ownStamp.get(fRewards))) return 0;
+            int changed = mergeRewardTiers(rows);
+            if (changed > 0) {
+                publishAll();
+                markTiersDirty();
+            }
+            stamp(fRewards);
+            return changed;
+        }
+    }
+
+    private int mergeProjects(List<Project> rows) {
+        int changed = 0;
+        for (Project f : rows) {
+            Project p = projects.get(f.getId());
+            if (p == null) {
+                projects.put(f.getId(), f);
+                schedule(f);
+                changed++;
+            } else if (!p.sameDefinition(f)) {
+                boolean moved = !Objects.equals(p.getDeadline(), f.getDeadline());
+                p.redefine(f.getName(), f.getGoalSatang(), f.getDeadline(), f.getCategory());
+                if (moved) schedule(p); //entry เก่าใน wheel ถูกข้ามเองตอน closeExpired
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private int mergeRewardTiers(List<RewardTier> rows) {
+        int changed = 0;
+        for (RewardTier f : rows) {
+            RewardTier t = findTier(rewardByProject.getOrDefault(f.getProjectId(), List.of()), f.getTierName());
+            if (t == null) {
+                putRewardTier(f);
+                changed++;
+                continue;
+            }
+            int capacity = (f.getCapacity() < 0) ? t.getCapacity() : f.getCapacity(); //ไฟล์รุ่นเก่าไม่มี capacity
+            if (t.getMinAmountSatang() == f.getMinAmountSatang() && t.getCapacity() == capacity) continue;
+            int quota = t.getQuota();
+            if (t.getCapacity() >= 0) quota = Math.max(0, quota + capacity - t.getCapacity());
+            putRewardTier(new RewardTier(t.getProjectId(), t.getTierName(), f.getMinAmountSatang(), quota, capacity));
+            changed++;
+        }
+        return changed;
+    }
+
+    //ก่อนเขียนทับ: ถ้ามีคนแก้ไฟล์หลังเราเขียนครั้งล่าสุด (watcher ยังไม่ทันเห็น) merge เข้ามาก่อนจะได้ไม่หาย
+    private void mergeExternalProjects() {
+        if (!changedOnDisk(fProjects)) return;
+        try {
+            if (mergeProjects(readProjects()) > 0) publishAll();
+        } catch (IOException | RuntimeException e) { e.printStackTrace(); }
+    }
+
+    private void mergeExternalRewardTiers() {
+        if (!changedOnDisk(fRewards)) return;
+        try {
+            if (mergeRewardTiers(readRewardTiers()) > 0) publishAll();
+        } catch (IOException | RuntimeException e) { e.printStackTrace(); }
+    }
+
+    /**อ่าน pledge_rules.csv ใหม่ (compile ใหม่ทั้งชุด แล้วนับยอดต่อ user ของโครงการที่จำกัด) คืนจำนวนโครงการที่มีกฎ */
+    public int reloadPledgeRules() throws IOException {
+        if (!changedOnDisk(fRules)) return 0;
+        Map<String, PledgeRules.Config> rules = readPledgeRules();
+        synchronized (this) {
+            applyPledgeRules(rules);
+            stamp(fRules);
+            return rules.size();
+        }
+    }
+
+    //เขียนลง <ไฟล์>.tmp แล้ว rename ทับ คนอ่านจากข้างนอก (reload/editor) เห็นไฟล์เก่าหรือใหม่ทั้งไฟล์ ไม่เห็นครึ่งๆ
+    private interface FileBody { void write(BufferedWriter bw) throws IOException; }
+
+    private static void replaceFile(Path f, FileBody body) throws IOException {
+        Path tmp = f.resolveSibling(f.getFileName() + ".tmp");
+        try (var bw = Files.newBufferedWriter(tmp)) {
+            body.write(bw);
+        }
+        Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void stamp(Path f) {
+        String s = fileStamp(f);
+        if (s != null) ownStamp.put(f, s);
+    }
+
+    private boolean changedOnDisk(Path f) {
+        String s = fileStamp(f);
+        return s != null && !s.equals(ownStamp.get(f));
+    }
+
+    private static String fileStamp(Path f) {
+        try {
+            return Files.getLastModifiedTime(f) + ":" + Files.size(f);
+        } catch (IOException e) {
+            return null; //ไม่มีไฟล์ (กำลังถูก rename แทนที่)
+        }
+    }
+
+    //---------- Load / Save ----------
+
+    private void loadAll() {
+        try { Files.createDirectories(dir); } catch (IOException ignored) {}
+
+        loadProjects();
+        loadRewardTiers();
+        deadlines = new DeadlineWheel(LocalDate.now().toEpochDay());
+        for (Project p : projects.values()) schedule(p);
+        loadUsers();
+        loadPledges(); //หลัง projects/rewards/users แล้ว จะได้อ้างอิงได้
+        loadPledgeRules(); //หลัง pledges: เติมยอดต่อ user
+        publishAll();
+    }
+
+    private void loadProjects() {
+        projects.clear();
+        if (!Files.exists(fProjects)) { saveProjects(); return; }
+        try {
+            for (Project p : readProjects()) projects.put(p.getId(), p);
+            stamp(fProjects);
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    //parse projects.csv ทั้งไฟล์ (ไม่แตะ state ใช้ร่วมกับ reload)
+    private List<Project> readProjects() throws IOException {
+        List<Project> out = new ArrayList<>();
+        try (var br = Files.newBufferedReader(fProjects)) {
+            String line; boolean skipHeader = true;
+            while ((line = br.readLine()) != null) {
+                if (skipHeader && line.startsWith("projectId")) { skipHeader = false; continue; }
+                if (line.isBlank()) continue;
+                String[] parts = splitCsv(line, 6);
+                String id = symbols.intern(parts[0]);
+                String name = parts[1];
+                long goal = parseMoney(parts[2]);
+                LocalDate deadline = LocalDate.parse(parts[3]);
+                String category = symbols.intern(parts[4]);
+                long raised = parseMoney(parts[5]);
+
+                Project p = new Project(id, name, goal, deadline, category);
+                //override raised จากไฟล์
+                if (raised > 0) p.addRaised(raised);
+                out.add(p);
+            }
+        }
+        return out;
+    }
+
+    private void saveProjects() {
+        mergeExternalProjects();
+        try {
+            replaceFile(fProjects, this::writeProjects);
+        } catch (IOException e) { e.printStackTrace(); }
+        stamp(fProjects);
+    }
+
+    private void writeProjects(BufferedWriter bw) throws IOException {
+        bw.write("projectId,name,goal,deadline,category,raised");
+        bw.newLine();
+        for (Project p : projects.values()) {
+            bw.write(String.join(",",
+                    p.getId(),
+                    esc(p.getName()),
+                    Money.encode(p.getGoalSatang()),
+                    p.getDeadline().toString(),
+                    esc(p.getCategory()),
+                    Money.encode(p.getRaisedSatang())
+            ));
+            bw.newLine();
+        }
+    }
+
+    private void loadRewardTiers() {
+        rewardByProject.clear();
+        if (!Files.exists(fRewards)) { saveRewardTiers(); return; }
+        try {
+            for (RewardTier t : readRewardTiers()) putRewardTier(t);
+            stamp(fRewards);
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private List<RewardTier> readRewardTiers() throws IOException {
+        List<RewardTier> out = new ArrayList<>();
+        try (var br = Files.newBufferedReader(fRewards)) {
+            String line; boolean skipHeader = true;
+            while ((line = br.readLine()) != null) {
+                if (skipHeader && line.startsWith("projectId")) { skipHeader = false; continue; }
+                if (line.isBlank()) continue;
+                String[] parts = splitCsv(line, 5);
+                //ไฟล์รุ่นเก่าไม่มี capacity -> -1 ให้ Reconciler เติม
+                int capacity = parts[4].isBlank() ? -1 : Integer.parseInt(parts[4]);
+                out.add(new RewardTier(
+                        symbols.intern(parts[0]), symbols.intern(parts[1]),
+                        parseMoney(parts[2]), Integer.parseInt(parts[3]), capacity));
+            }
+        }
+        return out;
+    }
+
+    private void saveRewardTiers() {
+        mergeExternalRewardTiers();
+        try {
+            replaceFile(fRewards, this::writeRewardTiers);
+        } catch (IOException e) { e.printStackTrace(); }
+        stamp(fRewards);
+    }
+
+    private void writeRewardTiers(BufferedWriter bw) throws IOException {
+        bw.write("projectId,tierName,minAmount,quota,capacity");
+        bw.newLine();
+        for (var entry : rewardByProject.entrySet()) {
+            for (var t : entry.getValue()) {
+                bw.write(String.join(",",
+                        t.getProjectId(),
+                        esc(t.getTierName()),
+                        Money.encode(t.getMinAmountSatang()),
+                        String.valueOf(t.getQuota()),
+                        String.valueOf(t.getCapacity())
+                ));
+                bw.newLine();
+            }
+        }
+    }
+
+    private void loadPledgeRules() {
+        try {
+            if (!Files.exists(fRules)) Files.write(fRules, List.of("projectId,maxAmount,maxPerUser"));
+            applyPledgeRules(readPledgeRules());
+            stamp(fRules);
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    //projectId,maxAmount,maxPerUser (ว่าง = ไม่จำกัด)
+    private Map<String, PledgeRules.Config> readPledgeRules() throws IOException {
+        Map<String, PledgeRules.Config> out = new HashMap<>();
+        try (var br = Files.newBufferedReader(fRules)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("projectId")) continue;
+                String[] parts = splitCsv(line, 3);
+                out.put(symbols.intern(parts[0].trim()),
+                        new PledgeRules.Config(parseMoney(parts[1].trim()), parseMoney(parts[2].trim())));
+            }
+        }
+        return out;
+    }
+
+    private void applyPledgeRules(Map<String, PledgeRules.Config> rules) {
+        pledgeRules.configure(rules);
+        for (String projectId : pledgeRules.trackedProjects()) {
+            try {
+                forEachPledge(projectId, true, pledgeRules::countSuccess);
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+    }
+
+    private void loadUsers() {
+        users.clear();
+        if (!Files.exists(fUsers)) { saveUsers(); return; }
+        try (var br = Files.newBufferedReader(fUsers)) {
+            String line; boolean skipHeader = true;
+            while ((line = br.readLine()) != null) {
+                if (skipHeader && line.startsWith("userId")) { skipHeader = false; continue; }
+                if (line.isBlank()) continue;
+                String[] parts = splitCsv(line, 4);
+                var u = new User(symbols.intern(parts[0]), parts[1], parts[2], parts[3]);
+                users.put(u.getUserId(), u);
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private void saveUsers() {
+        try (var bw = Files.newBufferedWriter(fUsers)) {
+            bw.write("userId,username,displayName,password");
+            bw.newLine();
+            for (User u : users.values()) {
+                bw.write(String.join(",",
+                        u.getUserId(),
+                        esc(u.getUsername()),
+                        esc(u.getDisplayName()),
+                        esc(u.getPassword())
+                ));
+                bw.newLine();
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private void loadPledges() {
+        pledges.clear();
+        pledgeIndex.clear();
+        pledgeCache.clear();
+        Arrays.fill(statusCounts, 0);
+        pledgeSeq = 0;
+
+        rollup.clear();
+        requests.clear();
+        rejectLog.load();
+        statusCounts[PledgeStatus.REJECT.ordinal()] += rejectLog.total() + pendingRejects.size();
+
+        //ยอดของส่วนที่ archive แล้วอ่านจาก index อย่างเดียว
+        archive.load(symbols);
+        for (PledgeArchive.Segment seg : archive.segments()) {
+            statusCounts[PledgeStatus.SUCCESS.ordinal()] += seg.success;
+            statusCounts[PledgeStatus.REJECT.ordinal()] += seg.reject;
+            pledgeSeq = Math.max(pledgeSeq, seg.maxSeq);
+        }
+
+        if (!Files.exists(fPledges)) { savePledges(); return; }
+        LocalDateTime horizon = FundingRollup.horizon(LocalDateTime.now());
+        String horizonText = horizon.toString();
+        String requestHorizon = LocalDateTime.now().minusNanos(RequestIndex.WINDOW_MILLIS * 1_000_000L).toString();
+        //แถวที่ segment ใน archive นับไปแล้ว (crash ระหว่าง archive ก่อนสลับไฟล์) ไม่นับซ้ำ
+        long[] archived = {0};
+        try {
+            if (pledgeMode == PledgeLoadMode.EAGER) {
+                PledgeFile.scan(fPledges, (off, line) -> {
+                    Pledge p = PledgeFile.parse(line, symbols);
+                    if (archive.covers(p.getProjectId(), PledgeFile.sequenceOf(p.getPledgeId()))) {
+                        archived[0]++;
+                        return;
+                    }
+                    pledges.put(p.getPledgeId(), p);
+                    countPledge(p);
+                    if (!p.getCreatedAt().isBefore(horizon)) rollup.add(p);
+                    if (p.getRequestHash() != 0 && p.getCreatedAt().toString().compareTo(requestHorizon) >= 0) {
+                        requests.put(p.getRequestHash(), p.getPledgeId(), List.of(), epochMillis(p.getCreatedAt()));
+                    }
+                });
+            } else {
+                //LAZY: เริ่มจาก pledges.idx ถ้ายังตรงกับไฟล์ แล้ว scan แค่บรรทัดที่ต่อท้ายหลัง checkpoint
+                Arrays.fill(liveCounts, 0);
+                PledgeIndex.State saved = loadIndex();
+                long from = 0;
+                if (saved != null) {
+                    for (int i = 0; i < liveCounts.length; i++) {
+                        liveCounts[i] = saved.liveCounts[i];
+                        statusCounts[i] += saved.liveCounts[i];
+                    }
+                    pledgeSeq = Math.max(pledgeSeq, saved.pledgeSeq);
+                    from = saved.covered;
+                }
+                //อ่านแค่ id/projectId/status เพื่อทำ aggregate + index ไม่สร้าง Pledge
+                PledgeFile.scanRange(fPledges, from, Long.MAX_VALUE, (off, line) -> {
+                    String[] parts = splitCsv(line, 8);
+                    int seq = PledgeFile.sequenceOf(parts[0]);
+                    if (archive.covers(parts[2], seq)) {
+                        archived[0]++;
+                        return;
+                    }
+                    pledgeSeq = Math.max(pledgeSeq, seq);
+                    PledgeStatus status = PledgeStatus.valueOf(parts[5]);
+                    statusCounts[status.ordinal()]++;
+                    liveCounts[status.ordinal()]++;
+                    String projectId = symbols.intern(parts[2]);
+                    pledgeIndex.computeIfAbsent(projectId, k -> new OffsetList()).add(off);
+                    //createdAt เป็น ISO เทียบ string ได้ ข้ามบรรทัดที่เก่ากว่า window ทั้งหมดโดยไม่ parse
+                    if (status == PledgeStatus.SUCCESS && parts[6].compareTo(horizonText) >= 0) {
+                        rollup.add(projectId, LocalDateTime.parse(parts[6]), parseMoney(parts[3]));
+                    }
+                    if (!parts[7].isEmpty() && parts[6].compareTo(requestHorizon) >= 0) {
+                        requests.put(PledgeFile.parseRequestHash(parts[7]), parts[0], List.of(),
+                                epochMillis(LocalDateTime.parse(parts[6])));
+                    }
+                });
+                if (saved == null && archived[0] == 0) saveIndex(); //scan ทั้งไฟล์ไปแล้ว boot ครั้งหน้าไม่ต้องทำอีก
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+        //ลบแถวพวกนั้นออกจากไฟล์ live ด้วย export/reconcile ที่อ่านไฟล์ตรงๆ จะได้ไม่เห็นซ้ำ (offset เปลี่ยนจึงโหลดใหม่)
+        if (archived[0] > 0 && dropArchivedRows()) loadPledges();
+    }
+
+    //pledges.idx ที่ยังตรงกับไฟล์ (เติม rollup/requests ให้แล้ว) หรือ null = ต้อง scan ทั้งไฟล์
+    private PledgeIndex.State loadIndex() {
+        try {
+            PledgeIndex.State st = indexFile.load(fPledges, archiveStamp(), rollup, requests, symbols,
+                    System.currentTimeMillis());
+            if (st != null) return st;
+        } catch (IOException | RuntimeException e) { e.printStackTrace(); }
+        rollup.clear(); //อาจถูกเติมไปบางส่วนก่อนพัง
+        requests.clear();
+        return null;
+    }
+
+    /**
+     *LAZY: เขียน pledges.idx ให้ครอบถึงท้าย pledges.csv ตอนนี้ (เรียกตอนปิดโปรแกรม)
+     *boot ครั้งหน้า scan แค่บรรทัดที่ต่อท้ายหลังจากนี้ ระหว่าง inBatch ข้ามไป (pledge ที่ค้างยังไม่ลงไฟล์)
+     */
+    public synchronized void checkpoint() {
+        if (pledgeMode != PledgeLoadMode.LAZY || batchDepth > 0) return;
+        saveIndex();
+    }
+
+    private void saveIndex() {
+        try {
+            indexFile.write(fPledges, archiveStamp(), liveCounts, pledgeSeq, rollup, requests, pledgeIndex);
+            pledgeIndex.clear(); //รวมเข้าไฟล์แล้ว
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    //archive เปลี่ยน (segment ใหม่/รับ segment ที่ค้าง) แถวที่ต้องข้ามใน pledges.csv ก็เปลี่ยน index เดิมใช้ไม่ได้
+    private String archiveStamp() {
+        String s = fileStamp(archive.indexFile());
+        return (s == null) ? "-" : s;
+    }
+
+    /**เขียนไฟล์ใหม่ทั้งไฟล์ (ใช้ตอนยังไม่มีไฟล์ หรือโหมด EAGER ที่ต้อง rewrite) */
+    private void savePledges() {
+        indexFile.invalidate();
+        try (var bw = Files.newBufferedWriter(fPledges)) {
+            bw.write(PledgeFile.HEADER);
+            bw.newLine();
+            for (Pledge p : pledges.values()) {
+                bw.write(PledgeFile.toCsv(p));
+                bw.newLine();
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    /**ต่อท้าย pledges.csv 1 บรรทัด + อัปเดต index/cache ของ LAZY */
+    private void appendPledge(Pledge p) {
+        appendPledges(List.of(p));
+    }
+
+    private void appendPledges(List<Pledge> batch) {
+        List<String> lines = new ArrayList<>(batch.size());
+        for (Pledge p : batch) lines.add(PledgeFile.toCsv(p));
+        try {
+            long[] offs = PledgeFile.appendAll(fPledges, lines);
+            if (pledgeMode == PledgeLoadMode.LAZY) {
+                for (int i = 0; i < offs.length; i++) {
+                    Pledge p = batch.get(i);
+                    liveCounts[p.getStatus().ordinal()]++;
+                    pledgeIndex.computeIfAbsent(p.getProjectId(), k -> new OffsetList()).add(offs[i]);
+                    List<Pledge> cached = pledgeCache.get(p.getProjectId());
+                    if (cached != null) cached.add(p);
+                }
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private void countPledge(Pledge p) {
+        statusCounts[p.getStatus().ordinal()]++;
+        pledgeSeq = Math.max(pledgeSeq, PledgeFile.sequenceOf(p.getPledgeId()));
+    }
+
+    private List<Pledge> loadProjectPledges(String projectId) {
+        List<Pledge> cached = pledgeCache.get(projectId);
+        if (cached != null) return cached;
+        List<Pledge> list = new ArrayList<>();
+        try {
+            long[] offsets = indexFile.offsets(projectId, pledgeIndex.get(projectId));
+            for (String line : PledgeFile.readLinesAt(fPledges, offsets, 0, offsets.length)) {
+                list.add(PledgeFile.parse(line, symbols));
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+        pledgeCache.put(projectId, list);
+        return list;
+    }
+
+    //long[] ที่ขยายได้ ไม่ box เป็น Long (8 byte ต่อ pledge)
+    static final class OffsetList {
+        long[] offsets = new long[4];
+        int size;
+
+        void add(long off) {
+            if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+            offsets[size++] = off;
+        }
+    }
+
+    //---------- Helpers ----------
+    static String[] splitCsv(String line, int expect) {
+        //ใช้split
+        String[] arr = line.split(",", -1);
+        if (arr.length < expect) {
+            //เติมช่องว่างให้ครบ
+            String[] pad = new String[expect];
+            Arrays.fill(pad, "");
+            System.arraycopy(arr, 0, pad, 0, arr.length);
+            return pad;
+        }
+        return arr;
+    }
+
+    static long epochMillis(LocalDateTime t) {
+        return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static long parseMoney(String s) {
+        try { return Money.parse(s); } catch (Exception e) { return 0L; }
+    }
+
+    static String esc(String s) {
+        if (s == null) return "";
+        return s.replace(',', ' ').replace('\r', ' ').replace('\n', ' '); //กัน , และขึ้นบรรทัดใหม่
+    }
+
+    static String nullToEmpty(String s) { return (s == null) ? "" : s; }
+    static String emptyToNull(String s) { return (s == null || s.isBlank()) ? null : s; }
+}
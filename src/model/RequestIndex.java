@@ -0,0 +1,194 @@
+package model;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *RequestIndex
+ *จำ idempotency key ที่เพิ่งใช้ไป ให้ client ที่ส่งซ้ำ (retry) ได้ผลเดิมโดยไม่สร้าง pledge ใหม่
+ *
+ *-เก็บแค่ hash 64 bit ของ key (ไม่เก็บ string) key ยาวแค่ไหนก็ใช้ที่เท่ากัน
+ *-จำไม่เกิน WINDOW_MILLIS และไม่เกิน MAX_ENTRIES รายการ เก่าสุดถูกไล่ออกก่อน (เรียงตามเวลาที่ใส่)
+ *-SUCCESS เขียน hash ลงคอลัมน์ requestHash ของ pledges.csv จึงสร้างใหม่ได้ตอน load
+ * REJECT จำไว้ใน mem อย่างเดียว (reject ไม่เปลี่ยนยอด ถ้า restart แล้วส่งซ้ำก็แค่ตรวจใหม่)
+ *
+ *โครงสร้างเป็น array ของ primitive ไม่มี object ต่อรายการ (ราว 32 byte/รายการ แทน node+Long+Outcome):
+ *-ring ตามลำดับที่ใส่: hash, เวลา, ผล (pledgeId หรือ errors) หัว = เก่าสุด
+ *-table แบบ open addressing (linear probe) hash -> ช่องใน ring + 1 ขนาด 2 เท่าของ ring
+ *ring โตทีละ 2 เท่าจนถึง MAX_ENTRIES แล้วจึงไล่หัวออก (ช่องที่ key ถูกใส่ซ้ำจะถูกอัดทิ้งตอน ring เต็ม)
+ *เรียกภายใต้ lock ของ Repository
+ */
+public final class RequestIndex {
+
+    static final long WINDOW_MILLIS = 24L * 60 * 60 * 1000;
+    static final int MAX_ENTRIES = 1 << 20;
+    private static final int INITIAL = 1024;
+
+    /**ผลเดิมของ key: pledgeId (SUCCESS) หรือ errors (REJECT) */
+    public static final class Outcome {
+        public final String pledgeId;     //null = reject
+        public final List<String> errors;
+        final long at;
+
+        Outcome(String pledgeId, List<String> errors, long at) {
+            this.pledgeId = pledgeId;
+            this.errors = errors;
+            this.at = at;
+        }
+    }
+
+    //ring (ความยาวเป็นกำลังของ 2) hash 0 = ช่องที่ key เดิมถูกใส่ใหม่ไปแล้ว (รอหลุดจากหัว)
+    private long[] hashes;
+    private long[] times;
+    private Object[] results; //String pledgeId หรือ List<String> errors
+    private int head, count, live;
+    private int[] table;
+
+    public RequestIndex() {
+        reset(INITIAL);
+    }
+
+    /**hash 64 bit ของ key (FNV-1a แล้วกระจายบิตอีกรอบ) 0 สงวนไว้แปลว่าไม่มี key */
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    @SuppressWarnings("unchecked")
+    Outcome get(long hash, long now) {
+        int i = find(hash);
+        if (i < 0) return null;
+        int r = table[i] - 1;
+        if (now - times[r] > WINDOW_MILLIS) return null;
+        Object res = results[r];
+        return (res instanceof String id)
+                ? new Outcome(id, List.of(), times[r])
+                : new Outcome(null, (List<String>) res, times[r]);
+    }
+
+    void put(long hash, String pledgeId, List<String> errors, long at) {
+        evict(at);
+        int i = find(hash);
+        if (i >= 0) { //key เดิม: ช่องเก่าใน ring กลายเป็นช่องว่าง ใส่ใหม่ท้าย ring
+            int r = table[i] - 1;
+            unlink(i);
+            hashes[r] = 0;
+            results[r] = null;
+            live--;
+        }
+        if (count == hashes.length) {
+            //ring เต็ม: ถ้าเป็นช่องว่างจาก key ซ้ำเยอะก็อัดใหม่ขนาดเดิม ไม่งั้นขยาย ถึงเพดานแล้วจึงไล่หัวออก
+            int len = hashes.length;
+            if (live <= len / 2 || (len == MAX_ENTRIES && live <= len - len / 8)) rebuild(len);
+            else if (len < MAX_ENTRIES) rebuild(len * 2);
+            else popHead();
+        }
+        int r = (head + count) & (hashes.length - 1);
+        hashes[r] = hash;
+        times[r] = at;
+        results[r] = (pledgeId != null) ? pledgeId : errors;
+        count++;
+        live++;
+        link(r);
+    }
+
+    /**รายการ SUCCESS ที่ยังจำอยู่ เก่าไปใหม่ (PledgeIndex บันทึกไว้ให้ LAZY boot ไม่ต้องไล่ pledges.csv) */
+    interface SuccessVisitor { void visit(long hash, String pledgeId, long at) throws IOException; }
+
+    void forEachSuccess(SuccessVisitor v) throws IOException {
+        int mask = hashes.length - 1;
+        for (int k = 0; k < count; k++) {
+            int r = (head + k) & mask;
+            if (hashes[r] != 0 && results[r] instanceof String id) v.visit(hashes[r], id, times[r]);
+        }
+    }
+
+    void clear() { reset(INITIAL); }
+
+    int size() { return live; }
+
+    //---------- ring ----------
+
+    //ไล่จากหัว (เก่าสุด) จนเจอตัวที่ยังอยู่ใน window
+    private void evict(long now) {
+        while (count > 0 && (hashes[head] == 0 || now - times[head] > WINDOW_MILLIS)) popHead();
+    }
+
+    private void popHead() {
+        if (hashes[head] != 0) {
+            unlink(find(hashes[head]));
+            live--;
+        }
+        hashes[head] = 0;
+        results[head] = null;
+        head = (head + 1) & (hashes.length - 1);
+        count--;
+    }
+
+    //ring ใหม่ขนาด capacity เรียงใหม่จากช่อง 0 (ทิ้งช่องว่าง) แล้วสร้าง table ใหม่
+    private void rebuild(int capacity) {
+        long[] h = hashes, t = times;
+        Object[] res = results;
+        int from = head, n = count, mask = h.length - 1;
+        reset(capacity);
+        for (int k = 0; k < n; k++) {
+            int r = (from + k) & mask;
+            if (h[r] == 0) continue;
+            hashes[count] = h[r];
+            times[count] = t[r];
+            results[count] = res[r];
+            link(count);
+            count++;
+            live++;
+        }
+    }
+
+    private void reset(int capacity) {
+        hashes = new long[capacity];
+        times = new long[capacity];
+        results = new Object[capacity];
+        table = new int[capacity * 2];
+        head = count = live = 0;
+    }
+
+    //---------- table ----------
+
+    //ตำแหน่งใน table ของ hash นี้ (-1 = ไม่มี)
+    private int find(long hash) {
+        int mask = table.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            int t = table[i];
+            if (t == 0) return -1;
+            if (hashes[t - 1] == hash) return i;
+        }
+    }
+
+    private void link(int ringSlot) {
+        int mask = table.length - 1;
+        int i = (int) hashes[ringSlot] & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = ringSlot + 1;
+    }
+
+    //ลบแบบเลื่อนตัวถัดไปกลับมาแทน (ไม่ต้องมี tombstone) hash ของช่อง ring ยังต้องอยู่ตอนเรียก
+    private void unlink(int i) {
+        int mask = table.length - 1;
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = (int) hashes[table[j] - 1] & mask;
+            //ย้าย j มาที่ i ได้ถ้า home ไม่อยู่ในช่วง (i, j] แบบวนรอบ
+            boolean between = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+}
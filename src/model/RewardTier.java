@@ -1,62 +1,82 @@
-package model;
-
-/**
- *RewardTier 
- *ระดับของรางวัลที่ผูกกับโครงการ (Project)
- *Unique กับ Projectด้วย (projectId, tierName)
- *
- *Fields
- *projectId : รหัสโครงการ (8 หลัก ตัวแรกไม่ใช่ 0) — ตรวจใน Validation
- *tierName  : ชื่อ tier
- *minAmount : ยอดสนับสนุนขั้นต่ำที่ต้องถึงเพื่อรับ tier นี้
- *quota     : จำนวนสิทธิ์คงเหลือ
- */
-public class RewardTier {
-
-    private final String projectId;
-    private final String tierName;
-    private final double minAmount;
-    private int quota;
-
-    public RewardTier(String projectId, String tierName, double minAmount, int quota) {
-        this.projectId = projectId;
-        this.tierName = tierName;
-        this.minAmount = minAmount;
-        this.quota = quota;
-    }
-
-    //Getters
-    public String getProjectId() { return projectId; }
-    public String getTierName() { return tierName; }
-    public double getMinAmount() { return minAmount; }
-    public int getQuota() { return quota; }
-
-    //ลด quota ลง 1 ถ้ามีการสนับสนุนใน tier นี้ 
-    public void consumeOneQuota() {
-        if (quota > 0) quota--;
-    }
-
-    //ใช้เช็คเร็วๆ เวลา validate ว่ามีสิทธิ์ให้รับไหม
-    public boolean hasQuota() { return quota > 0; }
-
-    //equals กับ /hashCode อิงตัว (projectId, tierName) ให้ไม่ซ้ำในโครงการเดียวกัน
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof RewardTier)) return false;
-        RewardTier other = (RewardTier) o;
-        return projectId.equals(other.projectId) && tierName.equals(other.tierName);
-    }
-
-    @Override
-    public int hashCode() {
-        int result = projectId.hashCode();
-        result = 31 * result + tierName.hashCode();
-        return result;
-    }
-
-    @Override
-    public String toString() {
-        return tierName + " (min " + minAmount + ", quota " + quota + ")";
-    }
-}
+package model;
+
+/**
+ *RewardTier 
+ *ระดับของรางวัลที่ผูกกับโครงการ (Project)
+ *Unique กับ Projectด้วย (projectId, tierName)
+ *
+ *Fields
+ *projectId : รหัสโครงการ (8 หลัก ตัวแรกไม่ใช่ 0) — ตรวจใน Validation
+ *tierName  : ชื่อ tier
+ *minAmount : ยอดสนับสนุนขั้นต่ำที่ต้องถึงเพื่อรับ tier นี้ (สตางค์)
+ *quota     : จำนวนสิทธิ์คงเหลือ
+ *capacity  : จำนวนสิทธิ์ตั้งต้น (ไว้ reconcile ว่า quota = capacity - pledge SUCCESS ที่ใช้ tier นี้)
+ *            -1 คือยังไม่รู้ (ไฟล์รุ่นเก่า) Reconciler จะเติมให้
+ */
+public class RewardTier {
+
+    private final String projectId;
+    private final String tierName;
+    private final long minAmount;
+    private int quota;
+    private int capacity;
+    private boolean frozen; //โครงการปิดแล้ว รับเพิ่มไม่ได้ (quota คงค่าเดิมไว้ให้ reconcile)
+
+    //tier ใหม่: quota ยังเต็ม capacity
+    public RewardTier(String projectId, String tierName, long minAmount, int quota) {
+        this(projectId, tierName, minAmount, quota, quota);
+    }
+
+    public RewardTier(String projectId, String tierName, long minAmount, int quota, int capacity) {
+        this.projectId = projectId;
+        this.tierName = tierName;
+        this.minAmount = minAmount;
+        this.quota = quota;
+        this.capacity = capacity;
+    }
+
+    //Getters
+    public String getProjectId() { return projectId; }
+    public String getTierName() { return tierName; }
+    public long getMinAmountSatang() { return minAmount; }
+    public int getQuota() { return quota; }
+    public int getCapacity() { return capacity; }
+    public boolean isFrozen() { return frozen; }
+
+    void setFrozen(boolean frozen) { this.frozen = frozen; }
+
+    //ใช้ตอน reconcile เท่านั้น
+    void repair(int quota, int capacity) {
+        this.quota = quota;
+        this.capacity = capacity;
+    }
+
+    //ลด quota ลง 1 ถ้ามีการสนับสนุนใน tier นี้ 
+    public void consumeOneQuota() {
+        if (quota > 0) quota--;
+    }
+
+    //ใช้เช็คเร็วๆ เวลา validate ว่ามีสิทธิ์ให้รับไหม
+    public boolean hasQuota() { return !frozen && quota > 0; }
+
+    //equals กับ /hashCode อิงตัว (projectId, tierName) ให้ไม่ซ้ำในโครงการเดียวกัน
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RewardTier)) return false;
+        RewardTier other = (RewardTier) o;
+        return projectId.equals(other.projectId) && tierName.equals(other.tierName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = projectId.hashCode();
+        result = 31 * result + tierName.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return tierName + " (min " + Money.format(minAmount) + ", quota " + quota + ")";
+    }
+}
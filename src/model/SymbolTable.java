@@ -0,0 +1,64 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *SymbolTable
+ *พจนานุกรม String กลาง ใช้กับ id / category / tierName ที่ซ้ำกันเยอะ
+ *ทุก loader ใน Repository ส่งค่าผ่าน intern() ค่าเดียวกันจึงมี instance เดียว
+ *ค่าที่มาจาก client (createPledge/submit/ingest) ใช้ lookup() ไม่เพิ่มลง table
+ *id มั่วๆ ที่ไม่มีอยู่จริงจะได้ไม่ค้างใน mem ตลอดอายุ process
+ *
+ *ค่าที่มาจาก intern() ด้วยกันเทียบด้วย == ได้เลย (ใช้ same() ถ้าไม่แน่ใจว่าอีกฝั่ง intern แล้ว)
+ */
+public class SymbolTable {
+
+    //ประมาณ overhead ต่อ String 1 ตัว (object header + fields + byte[] header) บน JVM 64-bit
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final ConcurrentHashMap<String, String> table = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**คืน instance กลางของค่านี้ (null คืน null) */
+    public String intern(String s) {
+        if (s == null) return null;
+        lookups.increment();
+        String prev = table.putIfAbsent(s, s);
+        if (prev == null) return s;
+        hits.increment();
+        savedBytes.add(STRING_OVERHEAD_BYTES + s.length());
+        return prev;
+    }
+
+    /**คืน instance กลางถ้ามีอยู่แล้ว ไม่มีก็คืนตัวที่ส่งมาเลย (ไม่เพิ่มลง table) */
+    public String lookup(String s) {
+        if (s == null) return null;
+        lookups.increment();
+        String prev = table.get(s);
+        if (prev == null) return s;
+        hits.increment();
+        savedBytes.add(STRING_OVERHEAD_BYTES + s.length());
+        return prev;
+    }
+
+    /**เทียบแบบ identity ก่อน ถ้าไม่ใช่ตัวเดียวกันค่อย equals */
+    public static boolean same(String a, String b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    public int size() { return table.size(); }
+    public long lookups() { return lookups.sum(); }
+    public long hits() { return hits.sum(); }
+
+    /**ประมาณหน่วยความจำที่ไม่ต้องจองเพราะได้ค่าซ้ำจาก table */
+    public long estimatedBytesSaved() { return savedBytes.sum(); }
+
+    /**ข้อความ diagnostic สั้นๆ ไว้ print ตอน boot */
+    public String diagnostic() {
+        return String.format("symbols=%d lookups=%d hits=%d saved~%dKB",
+                size(), lookups(), hits(), estimatedBytesSaved() / 1024);
+    }
+}
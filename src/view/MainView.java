@@ -1,230 +1,474 @@
-package view;
-
-import controller.AppController;
-import controller.AppController.SortMode;
-import model.Project;
-import model.RewardTier;
-
-import javax.swing.*;
-import javax.swing.table.AbstractTableModel;
-import java.awt.*;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
-
-public class MainView extends JFrame {
-
-    private final AppController controller;
-
-    //--- Login bar ---
-    private final JTextField tfUser = new JTextField(10);
-    private final JPasswordField tfPass = new JPasswordField(10);
-    private final JButton btnLogin = new JButton("Login");
-    private final JButton btnLogout = new JButton("Logout");
-    private final JLabel lbWho = new JLabel("User: -");
-
-    //--- Projects tab controls ---
-    private final JComboBox<String> cbSort = new JComboBox<>(new String[]{"NEWEST", "CLOSING_SOON", "TOP_FUNDED"});
-    private final JTextField tfCategory = new JTextField(10);
-    private final JTextField tfKeyword = new JTextField(12);
-    private final JButton btnRefresh = new JButton("Refresh");
-    private final JButton btnPledge = new JButton("Pledge Selected");
-
-    private final ProjectTableModel projectModel = new ProjectTableModel();
-    private final JTable projectTable = new JTable(projectModel);
-
-    //--- Stats tab ---
-    private final JLabel lbSuccess = new JLabel("SUCCESS: 0");
-    private final JLabel lbReject = new JLabel("REJECT: 0");
-    private final JButton btnStatRefresh = new JButton("Refresh Stats");
-
-    public MainView(AppController controller) {
-        super("Crowdfund MVC 66050386");
-        System.out.println("[UI] entering MainView constructor");
-        this.controller = controller;
-
-        //Frame
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
-        setLayout(new BorderLayout());
-
-        //UI
-        add(buildLoginBar(), BorderLayout.NORTH);
-        add(buildTabs(), BorderLayout.CENTER);
-
-        //Wire events
-        btnLogin.addActionListener(e -> doLogin());
-        btnLogout.addActionListener(e -> doLogout());
-        btnRefresh.addActionListener(e -> refreshProjects());
-        btnPledge.addActionListener(e -> doPledgeSelected());
-        btnStatRefresh.addActionListener(e -> refreshStats());
-
-        refreshProjects();
-        refreshStats();
-        updateAuthUI();
-        pack(); 
-        if (getWidth() < 900 || getHeight() < 500) {
-            setSize(980, 640); 
-        }
-        setLocationRelativeTo(null);  
-        setVisible(true);                
-        toFront();                      
-        System.out.println("[UI] MainView visible = " + isShowing());
-
-        //บางเครื่องต้องreq focus หลัง setVisible
-        SwingUtilities.invokeLater(() -> {
-            requestFocus();
-            projectTable.requestFocusInWindow();
-            System.out.println("[UI] focus requested; isShowing=" + isShowing());
-        });
-    }
-
-    //===== UI builders =====
-    private JComponent buildLoginBar() {
-        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        p.add(new JLabel("Username:")); p.add(tfUser);
-        p.add(new JLabel("Password:")); p.add(tfPass);
-        p.add(btnLogin); p.add(btnLogout);
-        p.add(Box.createHorizontalStrut(12));
-        p.add(lbWho);
-        return p;
-    }
-
-    private JComponent buildTabs() {
-        JTabbedPane tabs = new JTabbedPane();
-        tabs.addTab("Projects", buildProjectsTab());
-        tabs.addTab("Stats", buildStatsTab());
-        return tabs;
-    }
-
-    private JComponent buildProjectsTab() {
-        JPanel root = new JPanel(new BorderLayout());
-
-        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        filters.add(new JLabel("Sort:")); filters.add(cbSort);
-        filters.add(new JLabel("Category:")); filters.add(tfCategory);
-        filters.add(new JLabel("Keyword:")); filters.add(tfKeyword);
-        filters.add(btnRefresh);
-        root.add(filters, BorderLayout.NORTH);
-
-        projectTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        projectTable.setAutoCreateRowSorter(true);
-        root.add(new JScrollPane(projectTable), BorderLayout.CENTER);
-
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        bottom.add(btnPledge);
-        root.add(bottom, BorderLayout.SOUTH);
-
-        return root;
-    }
-
-    private JComponent buildStatsTab() {
-        JPanel p = new JPanel();
-        p.setLayout(new GridBagLayout());
-        GridBagConstraints gc = new GridBagConstraints();
-        gc.gridx = 0; gc.gridy = 0; gc.insets = new Insets(6,6,6,6);
-        p.add(lbSuccess, gc);
-        gc.gridy++;
-        p.add(lbReject, gc);
-        gc.gridy++;
-        p.add(btnStatRefresh, gc);
-        return p;
-    }
-
-    //===== Actions ต่างๆ=====
-    private void doLogin() {
-        var user = tfUser.getText().trim();
-        var pass = new String(tfPass.getPassword()).trim();
-        boolean ok = controller.login(user, pass);
-        JOptionPane.showMessageDialog(this, ok ? "Login success" : "Invalid username or password",
-                ok ? "Info" : "Error",
-                ok ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
-        updateAuthUI();
-    }
-
-    private void doLogout() {
-        controller.logout();
-        updateAuthUI();
-    }
-
-    private void updateAuthUI() {
-        boolean in = controller.isLoggedIn();
-        btnLogout.setEnabled(in);
-        lbWho.setText("User: " + (in ? controller.getCurrentUser().getDisplayName() : "-"));
-    }
-
-    private void refreshProjects() {
-        SortMode mode = switch (String.valueOf(cbSort.getSelectedItem())) {
-            case "CLOSING_SOON" -> SortMode.CLOSING_SOON;
-            case "TOP_FUNDED" -> SortMode.TOP_FUNDED;
-            default -> SortMode.NEWEST;
-        };
-        String cat = tfCategory.getText().trim();
-        String kw = tfKeyword.getText().trim();
-
-        List<Project> rows = controller.listProjects(mode, cat, kw);
-        projectModel.setData(rows);
-    }
-
-    private void refreshStats() {
-        lbSuccess.setText("SUCCESS: " + controller.countSuccess());
-        lbReject.setText("REJECT: " + controller.countReject());
-    }
-
-    private void doPledgeSelected() {
-    int row = projectTable.getSelectedRow();
-    if (row < 0) {
-        JOptionPane.showMessageDialog(this, "Please select a project from the table first",
-                "Warning", JOptionPane.WARNING_MESSAGE);
-        return;
-    }
-    int modelIndex = projectTable.convertRowIndexToModel(row);
-    Project p = projectModel.getAt(modelIndex);
-
-    if (!controller.isLoggedIn()) {
-        JOptionPane.showMessageDialog(this, "Please log in before pledging",
-                "Warning", JOptionPane.WARNING_MESSAGE);
-        return;
-    }
-
-    List<RewardTier> tiers = new ArrayList<>(controller.getRewardTiers(p.getId()));
-    EntityForm dlg = new EntityForm(this, controller, p, tiers, () -> {
-        refreshProjects();
-        refreshStats();
-    });
-    dlg.setVisible(true);
-}
-
-
-    //===== Table model =====
-    private static class ProjectTableModel extends AbstractTableModel {
-        private final String[] cols = {"ID", "Name", "Goal", "Raised", "Progress %", "Deadline", "Category"};
-        private final DateTimeFormatter fmt = DateTimeFormatter.ISO_LOCAL_DATE;
-        private List<Project> data = new ArrayList<>();
-
-        public void setData(List<Project> rows) {
-            this.data = new ArrayList<>(rows);
-            fireTableDataChanged();
-        }
-
-        public Project getAt(int row) { return data.get(row); }
-
-        @Override public int getRowCount() { return data.size(); }
-        @Override public int getColumnCount() { return cols.length; }
-        @Override public String getColumnName(int c) { return cols[c]; }
-
-        @Override
-        public Object getValueAt(int r, int c) {
-            Project p = data.get(r);
-            return switch (c) {
-                case 0 -> p.getId();
-                case 1 -> p.getName();
-                case 2 -> String.format("%.2f", p.getGoal());
-                case 3 -> String.format("%.2f", p.getRaised());
-                case 4 -> String.format("%.2f", (p.getRaised() / p.getGoal()) * 100.0);
-                case 5 -> p.getDeadline().format(fmt);
-                case 6 -> p.getCategory();
-                default -> "";
-            };
-        }
-    }
-}
+package view;
+
+import controller.AppController;
+import controller.AppController.SortMode;
+import model.CategoryFacets;
+import model.FundingRollup;
+import model.Money;
+import model.PledgeStatus;
+import model.Project;
+import model.RepoEvent;
+import model.RepoListener;
+import model.RepoSnapshot;
+import model.RewardTier;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MainView extends JFrame {
+
+    private final AppController controller;
+
+    //--- Login bar ---
+    private final JTextField tfUser = new JTextField(10);
+    private final JPasswordField tfPass = new JPasswordField(10);
+    private final JButton btnLogin = new JButton("Login");
+    private final JButton btnLogout = new JButton("Logout");
+    private final JLabel lbWho = new JLabel("User: -");
+
+    //--- Projects tab controls ---
+    private static final String ALL_CATEGORIES = "All";
+    private final JComboBox<String> cbSort = new JComboBox<>(new String[]{"NEWEST", "CLOSING_SOON", "TOP_FUNDED", "MOMENTUM"});
+    private final JComboBox<String> cbCategory = new JComboBox<>(new String[]{ALL_CATEGORIES});
+    private final Map<String, CategoryFacets.Facet> facetByCategory = new HashMap<>(); //ไว้ให้ renderer แสดงยอด
+    private final JTextField tfKeyword = new JTextField(12);
+    private final JButton btnRefresh = new JButton("Refresh");
+    private final JButton btnPledge = new JButton("Pledge Selected");
+
+    private final ProjectTableModel projectModel = new ProjectTableModel();
+    private final JTable projectTable = new JTable(projectModel);
+
+    //--- Stats tab ---
+    private final JLabel lbSuccess = new JLabel("SUCCESS: 0");
+    private final JLabel lbReject = new JLabel("REJECT: 0");
+    private final JLabel lbRaisedTotal = new JLabel("RAISED: 0.00");
+    private final JButton btnStatRefresh = new JButton("Refresh Stats");
+    private final JComboBox<String> cbWindow = new JComboBox<>(new String[]{"Last hour (per minute)",
+            "Last day (per hour)", "Last 30 days (per day)"});
+    private final JComboBox<String> cbChartProject = new JComboBox<>();
+    private final RollupChart chart = new RollupChart();
+    private final Timer chartTimer = new Timer(15_000, e -> refreshChart()); //window เลื่อนตามเวลาแม้ไม่มี pledge
+
+    //--- live update: event จาก Repository จดไว้ก่อน แล้ว timer บน EDT ค่อยอัปเดตทีละรอบ ---
+    private static final int FRAME_MS = 33; //ไม่เกิน ~30 ครั้ง/วินาที
+    private final Set<String> dirtyProjects = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean statsDirty = new AtomicBoolean();
+    private final AtomicBoolean catalogDirty = new AtomicBoolean();
+    private final RepoListener repoListener = this::onRepoEvent;
+    private final Timer frameTimer = new Timer(FRAME_MS, e -> applyPendingUpdates());
+    private SwingWorker<List<Row>, Void> projectLoader; //งานโหลดตารางล่าสุด (EDT เท่านั้น)
+
+    public MainView(AppController controller) {
+        super("Crowdfund MVC 66050386");
+        System.out.println("[UI] entering MainView constructor");
+        this.controller = controller;
+
+        //Frame
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        //UI
+        add(buildLoginBar(), BorderLayout.NORTH);
+        add(buildTabs(), BorderLayout.CENTER);
+
+        //Wire events
+        btnLogin.addActionListener(e -> doLogin());
+        btnLogout.addActionListener(e -> doLogout());
+        btnRefresh.addActionListener(e -> refreshProjects());
+        cbCategory.addActionListener(e -> refreshProjects());
+        btnPledge.addActionListener(e -> doPledgeSelected());
+        btnStatRefresh.addActionListener(e -> refreshStats());
+        cbWindow.addActionListener(e -> refreshChart());
+        cbChartProject.addActionListener(e -> refreshChart());
+        controller.subscribe(repoListener);
+        frameTimer.start();
+        chartTimer.start();
+
+        refreshCategories();
+        refreshProjects();
+        refreshChartProjects();
+        refreshStats();
+        updateAuthUI();
+        pack(); 
+        if (getWidth() < 900 || getHeight() < 500) {
+            setSize(980, 640); 
+        }
+        setLocationRelativeTo(null);  
+        setVisible(true);                
+        toFront();                      
+        System.out.println("[UI] MainView visible = " + isShowing());
+
+        //บางเครื่องต้องreq focus หลัง setVisible
+        SwingUtilities.invokeLater(() -> {
+            requestFocus();
+            projectTable.requestFocusInWindow();
+            System.out.println("[UI] focus requested; isShowing=" + isShowing());
+        });
+    }
+
+    //===== UI builders =====
+    private JComponent buildLoginBar() {
+        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        p.add(new JLabel("Username:")); p.add(tfUser);
+        p.add(new JLabel("Password:")); p.add(tfPass);
+        p.add(btnLogin); p.add(btnLogout);
+        p.add(Box.createHorizontalStrut(12));
+        p.add(lbWho);
+        return p;
+    }
+
+    private JComponent buildTabs() {
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Projects", buildProjectsTab());
+        tabs.addTab("Stats", buildStatsTab());
+        return tabs;
+    }
+
+    private JComponent buildProjectsTab() {
+        JPanel root = new JPanel(new BorderLayout());
+
+        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filters.add(new JLabel("Sort:")); filters.add(cbSort);
+        filters.add(new JLabel("Category:")); filters.add(cbCategory);
+        //แสดง "หมวด (เปิด/ทั้งหมด, raised/goal THB)" แต่ค่าที่เลือกยังเป็นชื่อหมวด
+        cbCategory.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean selected, boolean focus) {
+                CategoryFacets.Facet f = facetByCategory.get(String.valueOf(value));
+                return super.getListCellRendererComponent(list, f == null ? value : f.toString(),
+                        index, selected, focus);
+            }
+        });
+        filters.add(new JLabel("Keyword:")); filters.add(tfKeyword);
+        filters.add(btnRefresh);
+        root.add(filters, BorderLayout.NORTH);
+
+        projectTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        projectTable.setAutoCreateRowSorter(true);
+        //คอลัมน์ตัวเลขชิดขวา (ค่า sort เป็น raw อยู่แล้วผ่าน NumberCell)
+        var right = new DefaultTableCellRenderer();
+        right.setHorizontalAlignment(SwingConstants.RIGHT);
+        projectTable.setDefaultRenderer(NumberCell.class, right);
+        root.add(new JScrollPane(projectTable), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottom.add(btnPledge);
+        root.add(bottom, BorderLayout.SOUTH);
+
+        return root;
+    }
+
+    private JComponent buildStatsTab() {
+        JPanel p = new JPanel();
+        p.setLayout(new GridBagLayout());
+        GridBagConstraints gc = new GridBagConstraints();
+        gc.gridx = 0; gc.gridy = 0; gc.insets = new Insets(6,6,6,6);
+        p.add(lbSuccess, gc);
+        gc.gridy++;
+        p.add(lbReject, gc);
+        gc.gridy++;
+        p.add(lbRaisedTotal, gc);
+        gc.gridy++;
+        p.add(btnStatRefresh, gc);
+
+        //กราฟยอดตามช่วงเวลา (FundingRollup)
+        JPanel chartBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        chartBar.add(new JLabel("Window:")); chartBar.add(cbWindow);
+        chartBar.add(new JLabel("Project:")); chartBar.add(cbChartProject);
+        gc.gridy++;
+        p.add(chartBar, gc);
+        gc.gridy++; gc.fill = GridBagConstraints.BOTH; gc.weightx = 1; gc.weighty = 1;
+        p.add(chart, gc);
+        return p;
+    }
+
+    //===== Actions ต่างๆ=====
+    private void doLogin() {
+        var user = tfUser.getText().trim();
+        var pass = new String(tfPass.getPassword()).trim();
+        boolean ok = controller.login(user, pass);
+        JOptionPane.showMessageDialog(this, ok ? "Login success" : "Invalid username or password",
+                ok ? "Info" : "Error",
+                ok ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
+        updateAuthUI();
+    }
+
+    private void doLogout() {
+        controller.logout();
+        updateAuthUI();
+    }
+
+    private void updateAuthUI() {
+        boolean in = controller.isLoggedIn();
+        btnLogout.setEnabled(in);
+        lbWho.setText("User: " + (in ? controller.getCurrentUser().getDisplayName() : "-"));
+    }
+
+    //query + format ใน background แล้วค่อยส่งแถวที่พร้อมแสดงกลับมา EDT
+    //กดซ้ำระหว่างยังโหลดอยู่ งานเก่าถูก cancel และผลของงานเก่าจะไม่ถูกใช้
+    private void refreshProjects() {
+        SortMode mode = switch (String.valueOf(cbSort.getSelectedItem())) {
+            case "CLOSING_SOON" -> SortMode.CLOSING_SOON;
+            case "TOP_FUNDED" -> SortMode.TOP_FUNDED;
+            case "MOMENTUM" -> SortMode.MOMENTUM;
+            default -> SortMode.NEWEST;
+        };
+        Object selCat = cbCategory.getSelectedItem();
+        String cat = (selCat == null || ALL_CATEGORIES.equals(selCat)) ? "" : selCat.toString();
+        String kw = tfKeyword.getText().trim();
+
+        if (projectLoader != null) projectLoader.cancel(true);
+        SwingWorker<List<Row>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected List<Row> doInBackground() {
+                List<Project> projects = controller.listProjects(mode, cat, kw);
+                List<Row> rows = new ArrayList<>(projects.size());
+                for (Project p : projects) {
+                    if (isCancelled()) return rows;
+                    rows.add(new Row(p, controller.projection(p)));
+                }
+                return rows;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || projectLoader != this) return;
+                try {
+                    List<Row> rows = get();
+                    projectModel.setRows(rows);
+                    //แถวคำนวณจาก snapshot ตอนเริ่ม ถ้าระหว่างนั้นมี pledge ที่ frame ก่อนๆ ใช้ไปกับตารางเก่าแล้ว
+                    //ให้ frame ถัดไปทำแถวนั้นใหม่ (เทียบ raised กับ snapshot ล่าสุด ไม่ต้องคำนวณทุกแถว)
+                    RepoSnapshot s = controller.statsSnapshot();
+                    for (Row r : rows) {
+                        String id = r.project.getId();
+                        s.getProject(id).ifPresent(p -> {
+                            if (p.getRaisedSatang() != r.project.getRaisedSatang()) dirtyProjects.add(id);
+                        });
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        projectLoader = worker;
+        worker.execute();
+    }
+
+    private void refreshStats() {
+        //อ่านจาก snapshot เดียว ตัวเลขทั้งสามจึงตรงกันเสมอแม้มี pledge เข้ามาระหว่างนั้น
+        RepoSnapshot s = controller.statsSnapshot();
+        lbSuccess.setText("SUCCESS: " + s.countByStatus(PledgeStatus.SUCCESS));
+        lbReject.setText("REJECT: " + s.countByStatus(PledgeStatus.REJECT));
+        lbRaisedTotal.setText("RAISED: " + Money.format(s.getTotalRaisedSatang()));
+        refreshChart();
+    }
+
+    private void refreshChart() {
+        FundingRollup.Granularity g = switch (cbWindow.getSelectedIndex()) {
+            case 1 -> FundingRollup.Granularity.HOUR;
+            case 2 -> FundingRollup.Granularity.DAY;
+            default -> FundingRollup.Granularity.MINUTE;
+        };
+        Object sel = cbChartProject.getSelectedItem();
+        String projectId = (sel == null || "All".equals(sel)) ? null : sel.toString();
+        chart.setWindow(controller.fundingWindow(projectId, g, g.slots));
+    }
+
+    //หมวดใน dropdown พร้อมยอดล่าสุด (ค่าจาก CategoryFacets ไม่ต้องไล่โครงการ)
+    //ไม่แตะตอน popup เปิดอยู่ จะได้ไม่กระพริบใต้เมาส์ รอบถัดไปค่อยอัปเดต
+    private void refreshCategories() {
+        if (cbCategory.isPopupVisible()) return;
+        List<CategoryFacets.Facet> facets = controller.categoryFacets();
+        facetByCategory.clear();
+        for (CategoryFacets.Facet f : facets) facetByCategory.put(f.category, f);
+
+        Object sel = cbCategory.getSelectedItem();
+        boolean same = cbCategory.getItemCount() == facets.size() + 1;
+        for (int i = 0; same && i < facets.size(); i++) {
+            same = facets.get(i).category.equals(cbCategory.getItemAt(i + 1));
+        }
+        if (same) { cbCategory.repaint(); return; } //ชุดหมวดเดิม แค่ยอดเปลี่ยน
+
+        DefaultComboBoxModel<String> m = new DefaultComboBoxModel<>();
+        m.addElement(ALL_CATEGORIES);
+        for (CategoryFacets.Facet f : facets) m.addElement(f.category);
+        m.setSelectedItem(sel != null && facetByCategory.containsKey(sel.toString()) ? sel : ALL_CATEGORIES);
+        ActionListener[] ls = cbCategory.getActionListeners();
+        for (ActionListener l : ls) cbCategory.removeActionListener(l); //เปลี่ยน model ไม่ต้องโหลดตารางซ้ำ
+        cbCategory.setModel(m);
+        for (ActionListener l : ls) cbCategory.addActionListener(l);
+    }
+
+    //รายการ project ในตัวเลือกของกราฟ (ตามชุด project ล่าสุด)
+    private void refreshChartProjects() {
+        Object sel = cbChartProject.getSelectedItem();
+        DefaultComboBoxModel<String> m = new DefaultComboBoxModel<>();
+        m.addElement("All");
+        for (Project p : controller.statsSnapshot().getProjects()) m.addElement(p.getId());
+        m.setSelectedItem(sel == null ? "All" : sel);
+        cbChartProject.setModel(m);
+    }
+
+    //===== live update =====
+
+    //เรียกจาก thread ของ writer: แค่จดว่าอะไรเปลี่ยน ห้ามแตะ Swing ตรงนี้
+    private void onRepoEvent(RepoEvent e) {
+        if (e instanceof RepoEvent.ProjectRaisedChanged) {
+            dirtyProjects.add(((RepoEvent.ProjectRaisedChanged) e).projectId);
+        } else if (e instanceof RepoEvent.PledgeAdded || e instanceof RepoEvent.RejectRecorded) {
+            statsDirty.set(true);
+        } else if (e instanceof RepoEvent.CatalogChanged) {
+            catalogDirty.set(true);
+            statsDirty.set(true);
+        }
+    }
+
+    //บน EDT ทุก FRAME_MS: รวม event ที่ค้างเป็นการอัปเดตครั้งเดียวต่อแถว
+    private void applyPendingUpdates() {
+        if (catalogDirty.getAndSet(false)) {
+            refreshCategories();
+            refreshProjects();
+            refreshChartProjects();
+        } else if (!dirtyProjects.isEmpty()) {
+            RepoSnapshot s = controller.statsSnapshot();
+            for (var it = dirtyProjects.iterator(); it.hasNext(); ) {
+                String id = it.next();
+                it.remove();
+                s.getProject(id).ifPresent(p -> projectModel.updateProject(p, controller.projection(p)));
+            }
+        }
+        if (statsDirty.getAndSet(false)) {
+            refreshStats();
+            refreshCategories(); //raised ต่อหมวด
+        }
+    }
+
+    @Override
+    public void dispose() {
+        frameTimer.stop();
+        chartTimer.stop();
+        controller.unsubscribe(repoListener);
+        super.dispose();
+    }
+
+    private void doPledgeSelected() {
+    int row = projectTable.getSelectedRow();
+    if (row < 0) {
+        JOptionPane.showMessageDialog(this, "Please select a project from the table first",
+                "Warning", JOptionPane.WARNING_MESSAGE);
+        return;
+    }
+    int modelIndex = projectTable.convertRowIndexToModel(row);
+    Project p = projectModel.getAt(modelIndex);
+
+    if (!controller.isLoggedIn()) {
+        JOptionPane.showMessageDialog(this, "Please log in before pledging",
+                "Warning", JOptionPane.WARNING_MESSAGE);
+        return;
+    }
+
+    List<RewardTier> tiers = new ArrayList<>(controller.getRewardTiers(p.getId()));
+    //แถว/Stats อัปเดตเองจาก RepoEvent ไม่ต้อง refresh ทั้งตารางหลัง pledge
+    EntityForm dlg = new EntityForm(this, controller, p, tiers, null);
+    dlg.setVisible(true);
+}
+
+
+    //===== Table model =====
+
+    //ค่าตัวเลข + ข้อความที่ format ไว้แล้ว: sort ด้วย raw, แสดงด้วย text (ไม่ format ตอน paint)
+    static final class NumberCell implements Comparable<NumberCell> {
+        final long raw;
+        final String text;
+
+        NumberCell(long raw, String text) { this.raw = raw; this.text = text; }
+
+        @Override public int compareTo(NumberCell o) { return Long.compare(raw, o.raw); }
+        @Override public String toString() { return text; }
+    }
+
+    //1 แถวที่คำนวณค่าแสดงผลไว้ครบแล้ว (สร้างนอก EDT ได้)
+    static final class Row {
+        private static final DateTimeFormatter FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+        final Project project;
+        final NumberCell goal, raised, progress, projected;
+        final String deadline, eta;
+
+        Row(Project p, AppController.Projection pr) {
+            this.project = p;
+            this.goal = new NumberCell(p.getGoalSatang(), Money.format(p.getGoalSatang()));
+            this.raised = new NumberCell(p.getRaisedSatang(), Money.format(p.getRaisedSatang()));
+            //raised*10000/goal = เปอร์เซ็นต์คูณ 100 จึง format ด้วยทศนิยม 2 ตำแหน่งแบบเดียวกับเงินได้
+            long bp = p.getGoalSatang() > 0 ? p.getRaisedSatang() * 10000L / p.getGoalSatang() : 0;
+            this.progress = new NumberCell(bp, Money.format(bp));
+            this.deadline = p.getDeadline().format(FMT);
+            this.projected = new NumberCell(pr.projectedTotal, Money.format(pr.projectedTotal));
+            //ไม่มี pledge ช่วงหลัง = "-" ถึงหลัง deadline = ต่อท้าย (late)
+            this.eta = (pr.eta == null) ? "-"
+                    : pr.eta.format(FMT) + (pr.eta.isAfter(p.getDeadline()) ? " (late)" : "");
+        }
+    }
+
+    private static class ProjectTableModel extends AbstractTableModel {
+        private final String[] cols = {"ID", "Name", "Goal", "Raised", "Progress %", "Deadline", "Category",
+                "Projected", "ETA to goal"};
+        private List<Row> data = new ArrayList<>();
+        private final Map<String, Integer> rowById = new HashMap<>();
+
+        public void setRows(List<Row> rows) {
+            this.data = rows;
+            rowById.clear();
+            for (int i = 0; i < data.size(); i++) rowById.put(data.get(i).project.getId(), i);
+            fireTableDataChanged();
+        }
+
+        //แทนแถวเดียวด้วยค่าใหม่ ไม่ต้องสร้างทั้งตารางใหม่ (แถวที่ถูก filter ออกไปก็ข้าม)
+        public void updateProject(Project p, AppController.Projection pr) {
+            Integer row = rowById.get(p.getId());
+            if (row == null) return;
+            data.set(row, new Row(p, pr));
+            fireTableRowsUpdated(row, row);
+        }
+
+        public Project getAt(int row) { return data.get(row).project; }
+
+        @Override public int getRowCount() { return data.size(); }
+        @Override public int getColumnCount() { return cols.length; }
+        @Override public String getColumnName(int c) { return cols[c]; }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            return (c >= 2 && c <= 4 || c == 7) ? NumberCell.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            Row row = data.get(r);
+            return switch (c) {
+                case 0 -> row.project.getId();
+                case 1 -> row.project.getName();
+                case 2 -> row.goal;
+                case 3 -> row.raised;
+                case 4 -> row.progress;
+                case 5 -> row.deadline;
+                case 6 -> row.project.getCategory();
+                case 7 -> row.projected;
+                case 8 -> row.eta;
+                default -> "";
+            };
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package view;
+
+import model.FundingRollup;
+import model.Money;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.format.DateTimeFormatter;
+
+/**
+ *RollupChart
+ *กราฟแท่งยอด THB ต่อ bucket จาก FundingRollup.Window (แท่งสูงตามยอดเงิน ตัวเลขบนแท่งคือจำนวน pledge)
+ *วาดเองด้วย Graphics2D ไม่ใช้ library
+ */
+@SuppressWarnings("serial")
+class RollupChart extends JPanel {
+
+    private static final DateTimeFormatter MINUTE = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("dd/MM");
+
+    private FundingRollup.Window window;
+
+    RollupChart() {
+        setPreferredSize(new Dimension(640, 240));
+        setBackground(Color.WHITE);
+    }
+
+    void setWindow(FundingRollup.Window w) {
+        this.window = w;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g0) {
+        super.paintComponent(g0);
+        if (window == null) return;
+        Graphics2D g = (Graphics2D) g0;
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int left = 8, right = 8, top = 24, bottom = 22;
+        int w = getWidth() - left - right, h = getHeight() - top - bottom;
+        int n = window.amount.length;
+        long max = 1;
+        for (long a : window.amount) max = Math.max(max, a);
+
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(window.totalCount() + " pledges, " + Money.format(window.totalAmount())
+                + " THB (max/bucket " + Money.format(max) + ")", left, 16);
+
+        double slot = (double) w / n;
+        int bar = Math.max(1, (int) (slot * 0.8));
+        FontMetrics fm = g.getFontMetrics();
+        for (int i = 0; i < n; i++) {
+            int x = left + (int) (i * slot);
+            int bh = (int) ((double) window.amount[i] / max * (h - fm.getHeight()));
+            g.setColor(new Color(70, 130, 180));
+            g.fillRect(x, top + h - bh, bar, bh);
+            if (window.count[i] > 0 && bar >= fm.stringWidth("00")) {
+                g.setColor(Color.DARK_GRAY);
+                g.drawString(String.valueOf(window.count[i]), x, top + h - bh - 2);
+            }
+        }
+
+        g.setColor(Color.GRAY);
+        g.drawLine(left, top + h, left + w, top + h);
+        DateTimeFormatter f = (window.granularity == FundingRollup.Granularity.DAY) ? DAY : MINUTE;
+        g.drawString(window.firstBucket.format(f), left, getHeight() - 6);
+        String now = "now";
+        g.drawString(now, left + w - fm.stringWidth(now), getHeight() - 6);
+    }
+}